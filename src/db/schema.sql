@@ -1,4 +1,6 @@
 -- Attendance Management System schema (MySQL)
+-- The application applies its own versioned migrations (schema_version table) at startup;
+-- this script is only needed to create the database and its foreign keys by hand.
 
 CREATE DATABASE IF NOT EXISTS attendance_db CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci;
 USE attendance_db;
@@ -41,6 +43,26 @@ CREATE TABLE IF NOT EXISTS attendance_records (
   status ENUM('PRESENT','ABSENT','LATE') NOT NULL DEFAULT 'PRESENT',
   marked_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
   source ENUM('QR','CAMERA','MANUAL') NOT NULL DEFAULT 'QR',
+  check_in_photo_path TEXT NULL,
+  attendance_date DATE NOT NULL,
+  UNIQUE KEY uq_att_user_subject_date (user_id, subject_id, attendance_date),
+  INDEX idx_att_date (attendance_date),
   CONSTRAINT fk_att_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
   CONSTRAINT fk_att_subject FOREIGN KEY (subject_id) REFERENCES subjects(id) ON DELETE CASCADE
 ) ENGINE=InnoDB;
+
+-- Precomputed face templates derived from users.photo_path (one per user)
+CREATE TABLE IF NOT EXISTS user_face_templates (
+  user_id BIGINT PRIMARY KEY,
+  template_version INT NOT NULL,
+  algorithm_id VARCHAR(100) NOT NULL,
+  face_data BLOB NOT NULL,
+  descriptors BLOB NULL,
+  descriptor_rows INT NOT NULL DEFAULT 0,
+  descriptor_cols INT NOT NULL DEFAULT 0,
+  keypoint_count INT NOT NULL DEFAULT 0,
+  histogram BLOB NULL,
+  photo_hash VARCHAR(64) NOT NULL,
+  created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  CONSTRAINT fk_tpl_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+) ENGINE=InnoDB;
@@ -2,24 +2,32 @@ package com.ams.dao;
 
 import com.ams.db.Db;
 import com.ams.model.AttendanceRecord;
+import com.ams.util.AttendanceClock;
 
 import java.sql.*;
 import java.time.Instant;
 import java.time.LocalDate;
-import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
 
 public class AttendanceDao {
+    // The user already has a mark for this subject today; raised by the unique key, so it is race-free
+    public static class AlreadyMarkedException extends SQLException {
+        public AlreadyMarkedException(SQLException cause) {
+            super("Attendance already marked for this subject today", cause.getSQLState(), cause.getErrorCode(), cause);
+        }
+    }
+
     public AttendanceRecord insert(long userId, long subjectId, String status, String source) throws SQLException {
         return insert(userId, subjectId, status, source, null);
     }
     
+    // One round trip: the unique (user_id, subject_id, attendance_date) key rejects a second mark for the
+    // day, and the returned record is built from the inserted values rather than read back
     public AttendanceRecord insert(long userId, long subjectId, String status, String source, String checkInPhotoPath) throws SQLException {
-        // First, try to add the column if it doesn't exist
-        tryAddCheckInPhotoColumn();
-        
-        String sql = "INSERT INTO attendance_records(user_id, subject_id, status, source, check_in_photo_path) VALUES(?,?,?,?,?)";
+        // attendance_date is the day (in AttendanceClock's zone) the mark counts for; per-day lookups use it instead of DATE(marked_at)
+        Instant now = Instant.now();
+        String sql = "INSERT INTO attendance_records(user_id, subject_id, status, source, check_in_photo_path, marked_at, attendance_date) VALUES(?,?,?,?,?,?,?)";
         try (Connection c = Db.getConnection();
              PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setLong(1, userId);
@@ -27,11 +35,17 @@ public class AttendanceDao {
             ps.setString(3, status);
             ps.setString(4, source);
             ps.setString(5, checkInPhotoPath);
-            ps.executeUpdate();
+            ps.setTimestamp(6, Timestamp.from(now));
+            ps.setDate(7, Date.valueOf(AttendanceClock.dayOf(now)));
+            try {
+                ps.executeUpdate();
+            } catch (SQLException e) {
+                if (isDuplicateKey(e)) throw new AlreadyMarkedException(e);
+                throw e;
+            }
             try (ResultSet rs = ps.getGeneratedKeys()) {
                 if (rs.next()) {
-                    long id = rs.getLong(1);
-                    return findById(id);
+                    return new AttendanceRecord(rs.getLong(1), userId, subjectId, status, now, source, checkInPhotoPath);
                 }
             }
         }
@@ -44,7 +58,6 @@ public class AttendanceDao {
     }
 
     public AttendanceRecord findById(long id) throws SQLException {
-        tryAddCheckInPhotoColumn();
         try (Connection c = Db.getConnection();
              PreparedStatement ps = c.prepareStatement("SELECT id, user_id, subject_id, status, marked_at, source, check_in_photo_path FROM attendance_records WHERE id=?")) {
             ps.setLong(1, id);
@@ -56,7 +69,6 @@ public class AttendanceDao {
     }
 
     public List<AttendanceRecord> listAll() throws SQLException {
-        tryAddCheckInPhotoColumn();
         List<AttendanceRecord> out = new ArrayList<>();
         try (Connection c = Db.getConnection();
              PreparedStatement ps = c.prepareStatement("SELECT id, user_id, subject_id, status, marked_at, source, check_in_photo_path FROM attendance_records ORDER BY marked_at DESC");
@@ -67,7 +79,6 @@ public class AttendanceDao {
     }
 
     public List<AttendanceRecord> listByUser(long userId) throws SQLException {
-        tryAddCheckInPhotoColumn();
         List<AttendanceRecord> out = new ArrayList<>();
         try (Connection c = Db.getConnection();
              PreparedStatement ps = c.prepareStatement("SELECT id, user_id, subject_id, status, marked_at, source, check_in_photo_path FROM attendance_records WHERE user_id=? ORDER BY marked_at DESC")) {
@@ -89,10 +100,9 @@ public class AttendanceDao {
     }
     
     public List<AttendanceRecord> listByDate(LocalDate date) throws SQLException {
-        tryAddCheckInPhotoColumn();
         List<AttendanceRecord> out = new ArrayList<>();
         String sql = "SELECT id, user_id, subject_id, status, marked_at, source, check_in_photo_path FROM attendance_records " +
-                     "WHERE DATE(marked_at) = ? ORDER BY marked_at DESC";
+                     "WHERE attendance_date = ? ORDER BY marked_at DESC";
         try (Connection c = Db.getConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setDate(1, Date.valueOf(date));
@@ -104,9 +114,8 @@ public class AttendanceDao {
     }
     
     public AttendanceRecord findByUserSubjectDate(long userId, long subjectId, LocalDate date) throws SQLException {
-        tryAddCheckInPhotoColumn();
         String sql = "SELECT id, user_id, subject_id, status, marked_at, source, check_in_photo_path FROM attendance_records " +
-                     "WHERE user_id = ? AND subject_id = ? AND DATE(marked_at) = ? ORDER BY marked_at DESC LIMIT 1";
+                     "WHERE user_id = ? AND subject_id = ? AND attendance_date = ? ORDER BY marked_at DESC LIMIT 1";
         try (Connection c = Db.getConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setLong(1, userId);
@@ -119,12 +128,22 @@ public class AttendanceDao {
         return null;
     }
     
+    // Answered from idx_att_user_subject_date alone; no row is read or mapped
     public boolean hasAttendanceForToday(long userId, long subjectId) throws SQLException {
-        return findByUserSubjectDate(userId, subjectId, LocalDate.now()) != null;
+        String sql = "SELECT 1 FROM attendance_records WHERE user_id = ? AND subject_id = ? AND attendance_date = ? LIMIT 1";
+        try (Connection c = Db.getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setLong(1, userId);
+            ps.setLong(2, subjectId);
+            ps.setDate(3, Date.valueOf(AttendanceClock.today()));
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
     }
     
     public void deleteByDate(LocalDate date) throws SQLException {
-        String sql = "DELETE FROM attendance_records WHERE DATE(marked_at) = ?";
+        String sql = "DELETE FROM attendance_records WHERE attendance_date = ?";
         try (Connection c = Db.getConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setDate(1, Date.valueOf(date));
@@ -147,6 +166,11 @@ public class AttendanceDao {
         }
     }
 
+    // H2 and standard SQL report unique-key violations as 23505; MySQL uses 23000 with error 1062
+    private static boolean isDuplicateKey(SQLException e) {
+        return "23505".equals(e.getSQLState()) || ("23000".equals(e.getSQLState()) && e.getErrorCode() == 1062);
+    }
+
     private AttendanceRecord map(ResultSet rs) throws SQLException {
         AttendanceRecord a = new AttendanceRecord();
         a.setId(rs.getLong("id"));
@@ -159,30 +183,4 @@ public class AttendanceDao {
         a.setCheckInPhotoPath(rs.getString("check_in_photo_path"));
         return a;
     }
-
-    private void tryAddCheckInPhotoColumn() {
-        try (Connection c = Db.getConnection()) {
-            // Check if column exists and add it if it doesn't
-            String checkColumnSql = "PRAGMA table_info(attendance_records)";
-            boolean columnExists = false;
-            try (PreparedStatement ps = c.prepareStatement(checkColumnSql);
-                 ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    if ("check_in_photo_path".equals(rs.getString("name"))) {
-                        columnExists = true;
-                        break;
-                    }
-                }
-            }
-            
-            if (!columnExists) {
-                String addColumnSql = "ALTER TABLE attendance_records ADD COLUMN check_in_photo_path TEXT";
-                try (PreparedStatement ps = c.prepareStatement(addColumnSql)) {
-                    ps.executeUpdate();
-                }
-            }
-        } catch (SQLException e) {
-            // Column likely already exists, ignore
-        }
-    }
 }
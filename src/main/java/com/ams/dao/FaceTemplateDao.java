@@ -0,0 +1,92 @@
+package com.ams.dao;
+
+import com.ams.db.Db;
+import com.ams.model.FaceTemplateRecord;
+
+import java.sql.*;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FaceTemplateDao {
+    private static final String COLUMNS = "user_id, template_version, algorithm_id, face_data, descriptors, descriptor_rows, " +
+            "descriptor_cols, keypoint_count, histogram, photo_hash, created_at";
+
+    // Replaces the user's template (one row per user) atomically
+    public void save(FaceTemplateRecord r) throws SQLException {
+        try (Connection c = Db.getConnection()) {
+            boolean autoCommit = c.getAutoCommit();
+            c.setAutoCommit(false);
+            try (PreparedStatement del = c.prepareStatement("DELETE FROM user_face_templates WHERE user_id=?");
+                 PreparedStatement ins = c.prepareStatement("INSERT INTO user_face_templates(user_id, template_version, algorithm_id, " +
+                         "face_data, descriptors, descriptor_rows, descriptor_cols, keypoint_count, histogram, photo_hash) VALUES(?,?,?,?,?,?,?,?,?,?)")) {
+                del.setLong(1, r.getUserId());
+                del.executeUpdate();
+                ins.setLong(1, r.getUserId());
+                ins.setInt(2, r.getTemplateVersion());
+                ins.setString(3, r.getAlgorithmId());
+                ins.setBytes(4, r.getFaceData());
+                ins.setBytes(5, r.getDescriptors());
+                ins.setInt(6, r.getDescriptorRows());
+                ins.setInt(7, r.getDescriptorCols());
+                ins.setInt(8, r.getKeypointCount());
+                ins.setBytes(9, r.getHistogram());
+                ins.setString(10, r.getPhotoHash());
+                ins.executeUpdate();
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    public FaceTemplateRecord findByUserId(long userId) throws SQLException {
+        try (Connection c = Db.getConnection();
+             PreparedStatement ps = c.prepareStatement("SELECT " + COLUMNS + " FROM user_face_templates WHERE user_id=?")) {
+            ps.setLong(1, userId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) return map(rs);
+            }
+        }
+        return null;
+    }
+
+    // All persisted templates in one round trip (gallery / cache warm-up)
+    public List<FaceTemplateRecord> listAll() throws SQLException {
+        List<FaceTemplateRecord> out = new ArrayList<>();
+        try (Connection c = Db.getConnection();
+             PreparedStatement ps = c.prepareStatement("SELECT " + COLUMNS + " FROM user_face_templates");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) out.add(map(rs));
+        }
+        return out;
+    }
+
+    public void delete(long userId) throws SQLException {
+        try (Connection c = Db.getConnection();
+             PreparedStatement ps = c.prepareStatement("DELETE FROM user_face_templates WHERE user_id=?")) {
+            ps.setLong(1, userId);
+            ps.executeUpdate();
+        }
+    }
+
+    private FaceTemplateRecord map(ResultSet rs) throws SQLException {
+        FaceTemplateRecord r = new FaceTemplateRecord();
+        r.setUserId(rs.getLong("user_id"));
+        r.setTemplateVersion(rs.getInt("template_version"));
+        r.setAlgorithmId(rs.getString("algorithm_id"));
+        r.setFaceData(rs.getBytes("face_data"));
+        r.setDescriptors(rs.getBytes("descriptors"));
+        r.setDescriptorRows(rs.getInt("descriptor_rows"));
+        r.setDescriptorCols(rs.getInt("descriptor_cols"));
+        r.setKeypointCount(rs.getInt("keypoint_count"));
+        r.setHistogram(rs.getBytes("histogram"));
+        r.setPhotoHash(rs.getString("photo_hash"));
+        Timestamp ts = rs.getTimestamp("created_at");
+        r.setCreatedAt(ts != null ? ts.toInstant() : Instant.now());
+        return r;
+    }
+}
@@ -7,8 +7,21 @@ import java.sql.*;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class UserDao {
+    // Told after user rows change, so in-memory face caches can drop what no longer matches the table
+    public interface ChangeListener {
+        // photoPath is the user's registered photo after the change, null when the user was deleted
+        void userChanged(long userId, String photoPath);
+
+        void usersDeleted();
+    }
+
+    private static final List<ChangeListener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    public static void addChangeListener(ChangeListener listener) { LISTENERS.add(listener); }
+
     public User insert(String username, String passwordHash, String role, String photoPath, String officialEmail, String registrationNumber) throws SQLException {
         String sql = "INSERT INTO users(username, password_hash, role, photo_path, official_email, registration_number) VALUES(?,?,?,?,?,?)";
         try (Connection c = Db.getConnection();
@@ -42,14 +55,32 @@ public class UserDao {
             ps.setLong(6, id);
             ps.executeUpdate();
         }
+        // Registered photo may have changed; cached reference face templates must not outlive it
+        for (ChangeListener l : LISTENERS) l.userChanged(id, photoPath);
         return findById(id);
     }
 
+    // User and persisted template go in one transaction (the H2 schema has no cascading foreign key).
+    // Listeners are told even when it fails, so a cache never keeps a user the table may no longer have.
     public void delete(long id) throws SQLException {
-        try (Connection c = Db.getConnection();
-             PreparedStatement ps = c.prepareStatement("DELETE FROM users WHERE id=?")) {
-            ps.setLong(1, id);
-            ps.executeUpdate();
+        try (Connection c = Db.getConnection()) {
+            boolean autoCommit = c.getAutoCommit();
+            c.setAutoCommit(false);
+            try (PreparedStatement templates = c.prepareStatement("DELETE FROM user_face_templates WHERE user_id=?");
+                 PreparedStatement ps = c.prepareStatement("DELETE FROM users WHERE id=?")) {
+                templates.setLong(1, id);
+                templates.executeUpdate();
+                ps.setLong(1, id);
+                ps.executeUpdate();
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(autoCommit);
+            }
+        } finally {
+            for (ChangeListener l : LISTENERS) l.userChanged(id, null);
         }
     }
 
@@ -64,9 +95,23 @@ public class UserDao {
     }
     
     public void deleteAll() throws SQLException {
-        try (Connection c = Db.getConnection();
-             PreparedStatement ps = c.prepareStatement("DELETE FROM users WHERE role != 'ADMIN'")) {
-            ps.executeUpdate();
+        try (Connection c = Db.getConnection()) {
+            boolean autoCommit = c.getAutoCommit();
+            c.setAutoCommit(false);
+            try (PreparedStatement ps = c.prepareStatement("DELETE FROM users WHERE role != 'ADMIN'");
+                 PreparedStatement templates = c.prepareStatement(
+                         "DELETE FROM user_face_templates WHERE user_id NOT IN (SELECT id FROM users)")) {
+                ps.executeUpdate();
+                templates.executeUpdate();
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(autoCommit);
+            }
+        } finally {
+            for (ChangeListener l : LISTENERS) l.usersDeleted();
         }
     }
 
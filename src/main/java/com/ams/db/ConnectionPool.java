@@ -0,0 +1,525 @@
+package com.ams.db;
+
+import com.ams.config.Config;
+import com.ams.util.Metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bounded pool of physical JDBC connections for one database. Callers get a proxy whose close()
+// returns the connection (rolled back, session settings restored, the caller's statements closed)
+// instead of closing it. At most maxSize connections exist; borrowers beyond that wait up to
+// borrowTimeoutMillis and then get an SQLTimeoutException. Idle connections are handed out most-recently-used first, validated when they
+// sat idle for a while, and closed after idleTimeoutSeconds down to minIdle. Each connection keeps
+// an LRU cache of prepared statements, so the same DAO query is parsed once per connection.
+public class ConnectionPool implements AutoCloseable {
+    // A connection used this recently is assumed alive and not validated again on borrow
+    private static final long VALIDATION_BYPASS_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final ScheduledExecutorService HOUSEKEEPER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "db-pool-housekeeper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // maxSize bounds open connections; statementCacheSize <= 0 disables statement caching
+    public record Settings(int minIdle, int maxSize, long borrowTimeoutMillis, long idleTimeoutSeconds,
+                           int validationTimeoutSeconds, int statementCacheSize) {
+
+        // Reads <prefix>.minIdle, .maxSize, .borrowTimeoutMillis, .idleTimeoutSeconds,
+        // .validationTimeoutSeconds and .statementCacheSize, falling back to defaults
+        public static Settings fromConfig(String prefix, Settings defaults) {
+            return new Settings(
+                    Integer.parseInt(Config.get(prefix + ".minIdle", String.valueOf(defaults.minIdle))),
+                    Integer.parseInt(Config.get(prefix + ".maxSize", String.valueOf(defaults.maxSize))),
+                    Long.parseLong(Config.get(prefix + ".borrowTimeoutMillis", String.valueOf(defaults.borrowTimeoutMillis))),
+                    Long.parseLong(Config.get(prefix + ".idleTimeoutSeconds", String.valueOf(defaults.idleTimeoutSeconds))),
+                    Integer.parseInt(Config.get(prefix + ".validationTimeoutSeconds", String.valueOf(defaults.validationTimeoutSeconds))),
+                    Integer.parseInt(Config.get(prefix + ".statementCacheSize", String.valueOf(defaults.statementCacheSize))));
+        }
+    }
+
+    public static final Settings DEFAULTS = new Settings(2, 10, 5000, 300, 2, 64);
+
+    // Point-in-time view for sizing: waits and timeouts growing means maxSize is too small
+    public record Stats(int active, int idle, long borrows, long waits, double averageWaitMillis,
+                        long timeouts, long created, long evicted, long statementHits, long statementMisses) {
+        @Override
+        public String toString() {
+            return String.format("active=%d idle=%d borrows=%d waits=%d avgWait=%.2fms timeouts=%d created=%d evicted=%d stmtHits=%d stmtMisses=%d",
+                    active, idle, borrows, waits, averageWaitMillis, timeouts, created, evicted, statementHits, statementMisses);
+        }
+    }
+
+    // A physical connection and its cached statements
+    private final class Pooled {
+        final Connection connection;
+        // Session settings as the driver opened it; a borrower's changes are undone on return
+        final boolean defaultReadOnly;
+        final int defaultIsolation;
+        // Idle cached statements by SQL; a statement in use is removed and put back on close
+        final Map<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+        long lastUsedNanos = System.nanoTime();
+
+        Pooled(Connection connection) throws SQLException {
+            this.connection = connection;
+            this.defaultReadOnly = connection.isReadOnly();
+            this.defaultIsolation = connection.getTransactionIsolation();
+        }
+
+        // Rolls back an open transaction and restores auto-commit, read-only and isolation
+        void reset(boolean sessionChanged) throws SQLException {
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            if (!sessionChanged) return;
+            if (connection.isReadOnly() != defaultReadOnly) connection.setReadOnly(defaultReadOnly);
+            if (connection.getTransactionIsolation() != defaultIsolation) connection.setTransactionIsolation(defaultIsolation);
+        }
+
+        synchronized PreparedStatement takeStatement(String key) {
+            return statements.remove(key);
+        }
+
+        // Returns true when the statement was kept for reuse
+        synchronized boolean offerStatement(String key, PreparedStatement ps) {
+            if (statements.containsKey(key)) return false;
+            statements.put(key, ps);
+            if (statements.size() > settings.statementCacheSize) {
+                Iterator<PreparedStatement> eldest = statements.values().iterator();
+                closeQuietly(eldest.next());
+                eldest.remove();
+            }
+            return true;
+        }
+
+        synchronized void closePhysical() {
+            statements.values().forEach(ConnectionPool::closeQuietly);
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException ignored) {}
+        }
+    }
+
+    private final String name;
+    private final String url;
+    private final String user;
+    private final String password;
+    private final Settings settings;
+    private final Semaphore permits;
+    // Most recently returned first; the housekeeper evicts from the tail
+    private final Deque<Pooled> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger open = new AtomicInteger();
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+    private volatile boolean closed;
+
+    public ConnectionPool(String name, String url, String user, String password, Settings settings) {
+        this.name = name;
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.settings = settings;
+        this.permits = new Semaphore(settings.maxSize, true);
+        Metrics.gauge("db.pool." + name + ".active", active::get);
+        Metrics.gauge("db.pool." + name + ".idle", idle::size);
+        Metrics.gauge("db.pool." + name + ".timeouts", timeouts::sum);
+        Metrics.gauge("db.pool." + name + ".averageWaitMillis", () -> getStats().averageWaitMillis());
+        long period = Math.max(1, settings.idleTimeoutSeconds / 2);
+        HOUSEKEEPER.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.SECONDS);
+    }
+
+    public String getName() { return name; }
+
+    public String getUrl() { return url; }
+
+    public Connection getConnection() throws SQLException {
+        if (closed) throw new SQLException("Connection pool " + name + " is closed");
+        borrows.increment();
+        long start = System.nanoTime();
+        boolean acquired = permits.tryAcquire();
+        if (!acquired) {
+            waits.increment();
+            try {
+                acquired = permits.tryAcquire(settings.borrowTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a connection from pool " + name, e);
+            } finally {
+                waitNanos.add(System.nanoTime() - start);
+            }
+            if (!acquired) {
+                timeouts.increment();
+                throw new SQLTimeoutException("No connection available from pool " + name + " within "
+                        + settings.borrowTimeoutMillis + " ms (" + getStats() + ")");
+            }
+        }
+        try {
+            Pooled p = borrowIdle();
+            if (p == null) p = create();
+            active.incrementAndGet();
+            return wrap(p);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public Stats getStats() {
+        long w = waits.sum();
+        return new Stats(active.get(), idle.size(), borrows.sum(), w, w == 0 ? 0 : waitNanos.sum() / 1_000_000.0 / w,
+                timeouts.sum(), created.sum(), evicted.sum(), statementHits.sum(), statementMisses.sum());
+    }
+
+    // Closes idle connections; borrowed ones are closed when they come back
+    @Override
+    public void close() {
+        closed = true;
+        Pooled p;
+        while ((p = idle.pollFirst()) != null) discard(p);
+        System.out.println("Connection pool " + name + " closed: " + getStats());
+    }
+
+    private Pooled borrowIdle() {
+        Pooled p;
+        while ((p = idle.pollFirst()) != null) {
+            if (System.nanoTime() - p.lastUsedNanos < VALIDATION_BYPASS_NANOS || isValid(p)) return p;
+            discard(p);
+        }
+        return null;
+    }
+
+    private boolean isValid(Pooled p) {
+        try {
+            return p.connection.isValid(settings.validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private Pooled create() throws SQLException {
+        Connection c = DriverManager.getConnection(url, user, password);
+        Pooled p;
+        try {
+            p = new Pooled(c);
+        } catch (SQLException e) {
+            closeQuietly(c);
+            throw e;
+        }
+        open.incrementAndGet();
+        created.increment();
+        return p;
+    }
+
+    private void discard(Pooled p) {
+        open.decrementAndGet();
+        evicted.increment();
+        p.closePhysical();
+    }
+
+    private void giveBack(Pooled p, boolean broken, boolean sessionChanged) {
+        active.decrementAndGet();
+        try {
+            if (!broken && !closed && !p.connection.isClosed()) {
+                p.reset(sessionChanged);
+                p.lastUsedNanos = System.nanoTime();
+                idle.offerFirst(p);
+                return;
+            }
+        } catch (SQLException e) {
+            // Fall through: a connection that cannot be reset is not reused
+        } finally {
+            permits.release();
+        }
+        discard(p);
+    }
+
+    // Evicts connections idle past idleTimeoutSeconds while more than minIdle are open, then tops up to minIdle
+    private void housekeep() {
+        if (closed) return;
+        long cutoff = System.nanoTime() - TimeUnit.SECONDS.toNanos(settings.idleTimeoutSeconds);
+        List<Pooled> kept = new ArrayList<>();
+        Pooled p;
+        while (open.get() - kept.size() > settings.minIdle && (p = idle.pollLast()) != null) {
+            if (p.lastUsedNanos < cutoff) discard(p);
+            else kept.add(p);
+        }
+        for (int i = kept.size() - 1; i >= 0; i--) idle.offerLast(kept.get(i));
+        // A pool nobody has used yet (e.g. the fallback while the primary is up) opens nothing
+        if (created.sum() == 0) return;
+        try {
+            while (open.get() < Math.min(settings.minIdle, settings.maxSize) && permits.tryAcquire()) {
+                try {
+                    idle.offerLast(create());
+                } finally {
+                    permits.release();
+                }
+            }
+        } catch (SQLException e) {
+            // The database is unreachable; borrowers will report it
+        }
+    }
+
+    private Connection wrap(Pooled p) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                new ConnectionHandler(p));
+    }
+
+    // Connection-level failures (SQLState class 08) mean the physical connection must not be reused
+    private static boolean isFatal(SQLException e) {
+        return e.getSQLState() != null && e.getSQLState().startsWith("08");
+    }
+
+    private static void closeQuietly(AutoCloseable c) {
+        try {
+            c.close();
+        } catch (Exception ignored) {}
+    }
+
+    // Session setters whose effect would otherwise carry over to the next borrower
+    private static final Set<String> SESSION_SETTERS = Set.of(
+            "setReadOnly", "setTransactionIsolation", "setCatalog", "setSchema", "setHoldability");
+
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Pooled pooled;
+        // Statements handed out on this logical connection and not yet closed; closed when it is returned
+        private final Set<AutoCloseable> openStatements = ConcurrentHashMap.newKeySet();
+        private volatile boolean returned;
+        // Set by this connection's statements and result sets too, which fail on other threads' locks
+        private volatile boolean broken;
+        private boolean sessionChanged;
+
+        ConnectionHandler(Pooled pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String m = method.getName();
+            switch (m) {
+                case "close" -> {
+                    if (!returned) {
+                        // Before the connection is visible to anyone else: cached statements go back to the cache
+                        // and every other statement of this borrower is closed
+                        new ArrayList<>(openStatements).forEach(ConnectionPool::closeQuietly);
+                        openStatements.clear();
+                        returned = true;
+                        giveBack(pooled, broken, sessionChanged);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return returned || pooled.connection.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled[" + name + "] " + pooled.connection;
+                }
+                default -> { }
+            }
+            if (returned) throw new SQLException("Connection has been returned to pool " + name);
+            if (settings.statementCacheSize > 0 && m.equals("prepareStatement") && args.length <= 2
+                    && (args.length == 1 || method.getParameterTypes()[1] == int.class)) {
+                return prepare(proxy, (String) args[0], args.length == 2 ? (Integer) args[1] : null);
+            }
+            if (SESSION_SETTERS.contains(m)) sessionChanged = true;
+            try {
+                Object result = method.invoke(pooled.connection, args);
+                if (result instanceof Statement st) return track(proxy, method.getReturnType(), st, null);
+                return result;
+            } catch (InvocationTargetException e) {
+                throw failed(e.getCause());
+            }
+        }
+
+        // Marks the connection for discard when the failure means its link is gone
+        Throwable failed(Throwable cause) {
+            if (cause instanceof SQLException se && isFatal(se)) broken = true;
+            return cause;
+        }
+
+        private PreparedStatement prepare(Object connectionProxy, String sql, Integer autoGeneratedKeys) throws SQLException {
+            String key = autoGeneratedKeys == null ? sql : autoGeneratedKeys + ":" + sql;
+            PreparedStatement ps = pooled.takeStatement(key);
+            if (ps != null) {
+                statementHits.increment();
+            } else {
+                statementMisses.increment();
+                try {
+                    ps = autoGeneratedKeys == null ? pooled.connection.prepareStatement(sql)
+                            : pooled.connection.prepareStatement(sql, autoGeneratedKeys);
+                } catch (SQLException e) {
+                    failed(e);
+                    throw e;
+                }
+            }
+            return (PreparedStatement) track(connectionProxy, PreparedStatement.class, ps, key);
+        }
+
+        // Every statement goes out behind a StatementHandler; key is null for statements that are not cached
+        private Statement track(Object connectionProxy, Class<?> type, Statement target, String key) {
+            Statement statement = (Statement) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                    new StatementHandler(this, (Connection) connectionProxy, target, key));
+            openStatements.add(statement);
+            return statement;
+        }
+
+        void statementClosed(AutoCloseable statement) {
+            openStatements.remove(statement);
+        }
+    }
+
+    // Closing a cached statement clears its parameters and returns it to the connection's cache; any other
+    // statement is closed. It only works while its logical connection is borrowed: afterwards the physical
+    // connection may be another thread's, so every call fails as if the statement had been closed with the
+    // connection. Result sets are wrapped the same way, so getStatement() never leaks the driver's objects.
+    private final class StatementHandler implements InvocationHandler {
+        private final ConnectionHandler handle;
+        private final Connection connectionProxy;
+        private final Pooled owner;
+        private final Statement target;
+        private final String key;
+        private volatile boolean closed;
+
+        StatementHandler(ConnectionHandler handle, Connection connectionProxy, Statement target, String key) {
+            this.handle = handle;
+            this.connectionProxy = connectionProxy;
+            this.owner = handle.pooled;
+            this.target = target;
+            this.key = key;
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (closed) return null;
+                    closed = true;
+                    handle.statementClosed((AutoCloseable) proxy);
+                    if (key != null && target instanceof PreparedStatement ps) {
+                        try {
+                            ps.clearParameters();
+                            ps.clearBatch();
+                            if (owner.offerStatement(key, ps)) return null;
+                        } catch (SQLException e) {
+                            // Not reusable; closed below
+                        }
+                    }
+                    target.close();
+                    return null;
+                }
+                case "isClosed" -> {
+                    return closed || handle.returned || target.isClosed();
+                }
+                case "getConnection" -> {
+                    // The logical connection, so closing it through the statement returns it to the pool
+                    return connectionProxy;
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled[" + name + "] " + target;
+                }
+                default -> { }
+            }
+            if (closed) throw new SQLException("Statement is closed");
+            if (handle.returned) throw new SQLException("Statement's connection has been returned to pool " + name);
+            try {
+                Object result = method.invoke(target, args);
+                if (result instanceof ResultSet rs) {
+                    return Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                            new ResultSetHandler(this, (Statement) proxy, rs));
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw handle.failed(e.getCause());
+            }
+        }
+    }
+
+    // Reads fail once the statement is closed or its connection returned, like the driver's own result sets
+    private final class ResultSetHandler implements InvocationHandler {
+        private final StatementHandler statement;
+        private final Statement statementProxy;
+        private final ResultSet target;
+
+        ResultSetHandler(StatementHandler statement, Statement statementProxy, ResultSet target) {
+            this.statement = statement;
+            this.statementProxy = statementProxy;
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!statement.handle.returned) target.close();
+                    return null;
+                }
+                case "isClosed" -> {
+                    return statement.closed || statement.handle.returned || target.isClosed();
+                }
+                case "getStatement" -> {
+                    return statementProxy;
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled[" + name + "] " + target;
+                }
+                default -> { }
+            }
+            if (statement.closed || statement.handle.returned) throw new SQLException("ResultSet is closed");
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw statement.handle.failed(e.getCause());
+            }
+        }
+    }
+}
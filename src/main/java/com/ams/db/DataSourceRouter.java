@@ -0,0 +1,151 @@
+package com.ams.db;
+
+import com.ams.config.Config;
+import com.ams.util.Metrics;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Routes connections to the primary database (MySQL) or the fallback (embedded H2) with a circuit
+// breaker. While the circuit is closed callers use the primary; after failureThreshold consecutive
+// connection failures (from callers or the background probe) it opens and every caller goes straight
+// to the fallback, never waiting on the primary's connect timeout. Only the probe, running every
+// probeIntervalSeconds, touches the primary while the circuit is open, and one successful health
+// check closes it again. Every switch is logged and published to listeners.
+public class DataSourceRouter implements AutoCloseable {
+    public enum Target { PRIMARY, FALLBACK }
+
+    // Where connections currently go, since when, and why the last switch happened
+    public record State(Target target, Instant since, int consecutiveFailures, String lastError) {}
+
+    private final ConnectionPool primary;
+    private final ConnectionPool fallback;
+    private final int failureThreshold;
+    private final int validationTimeoutSeconds;
+    private final List<Consumer<State>> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService prober = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "db-health-probe");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile State state = new State(Target.PRIMARY, Instant.now(), 0, null);
+
+    public DataSourceRouter(ConnectionPool primary, ConnectionPool fallback) {
+        this(primary, fallback,
+                Integer.parseInt(Config.get("db.router.failureThreshold", "2")),
+                Integer.parseInt(Config.get("db.router.probeTimeoutSeconds", "2")),
+                Math.max(1, Long.parseLong(Config.get("db.router.probeIntervalSeconds", "10"))));
+    }
+
+    // probeIntervalSeconds <= 0 schedules no probe; tests then call probe() themselves
+    DataSourceRouter(ConnectionPool primary, ConnectionPool fallback, int failureThreshold,
+                     int validationTimeoutSeconds, long probeIntervalSeconds) {
+        this.primary = primary;
+        this.fallback = fallback;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        Metrics.gauge("db.router.onFallback", () -> state.target() == Target.FALLBACK ? 1 : 0);
+        // The first probe runs at once, so a primary that is down at startup is detected in the background
+        if (probeIntervalSeconds > 0) {
+            prober.scheduleWithFixedDelay(this::probe, 0, probeIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    public Connection getConnection() throws SQLException {
+        if (state.target() == Target.PRIMARY) {
+            try {
+                Connection c = primary.getConnection();
+                onPrimarySuccess(false);
+                return c;
+            } catch (SQLTimeoutException e) {
+                // The pool is exhausted, not the database unreachable
+                throw e;
+            } catch (SQLException e) {
+                onPrimaryFailure(e);
+                if (fallback == null) throw e;
+            }
+        }
+        if (fallback == null) throw new SQLException("Primary database unavailable: " + state.lastError());
+        return fallback.getConnection();
+    }
+
+    public State getState() { return state; }
+
+    public Target getTarget() { return state.target(); }
+
+    public ConnectionPool getPool(Target target) {
+        return target == Target.PRIMARY ? primary : fallback;
+    }
+
+    // Called on the switching thread with the new state
+    public void addListener(Consumer<State> listener) { listeners.add(listener); }
+
+    public void removeListener(Consumer<State> listener) { listeners.remove(listener); }
+
+    @Override
+    public void close() {
+        prober.shutdownNow();
+    }
+
+    void probe() {
+        try (Connection c = primary.getConnection()) {
+            if (!c.isValid(validationTimeoutSeconds)) throw new SQLException("validation failed");
+            onPrimarySuccess(true);
+        } catch (SQLTimeoutException e) {
+            // Every primary connection is busy, which means the primary is in use and reachable
+        } catch (SQLException | RuntimeException e) {
+            onPrimaryFailure(e);
+        }
+    }
+
+    // Only a health check switches back; a caller that reached the primary just clears the failure count
+    private void onPrimarySuccess(boolean healthCheck) {
+        State s = state;
+        if (s.target() == Target.PRIMARY && s.consecutiveFailures() == 0) return;
+        synchronized (this) {
+            s = state;
+            if (s.target() == Target.FALLBACK) {
+                if (healthCheck) switchTo(new State(Target.PRIMARY, Instant.now(), 0, s.lastError()));
+            } else {
+                state = new State(Target.PRIMARY, s.since(), 0, s.lastError());
+            }
+        }
+    }
+
+    private synchronized void onPrimaryFailure(Exception e) {
+        State s = state;
+        String error = e.getMessage();
+        if (s.target() == Target.FALLBACK) {
+            state = new State(Target.FALLBACK, s.since(), s.consecutiveFailures() + 1, error);
+            return;
+        }
+        int failures = s.consecutiveFailures() + 1;
+        if (failures >= failureThreshold && fallback != null) {
+            switchTo(new State(Target.FALLBACK, Instant.now(), failures, error));
+        } else {
+            state = new State(Target.PRIMARY, s.since(), failures, error);
+        }
+    }
+
+    private void switchTo(State next) {
+        state = next;
+        Metrics.increment("db.router.switches");
+        System.err.println("Database routing switched to " + next.target()
+                + (next.target() == Target.FALLBACK ? " (" + next.lastError() + ")" : ""));
+        for (Consumer<State> l : listeners) {
+            try {
+                l.accept(next);
+            } catch (RuntimeException ex) {
+                System.err.println("Database routing listener failed: " + ex.getMessage());
+            }
+        }
+    }
+}
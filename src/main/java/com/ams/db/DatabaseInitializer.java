@@ -1,14 +1,22 @@
 package com.ams.db;
 
+import com.ams.util.AttendanceClock;
+
 import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
 
+// Owns the schema as an ordered list of migrations. Append new migrations with the next version
+// number; never edit one that has shipped, since databases that already applied it will not rerun it.
 public class DatabaseInitializer {
-    public static void init() {
-        try (Connection c = Db.getConnection(); Statement st = c.createStatement()) {
-            // Users
-            st.executeUpdate("CREATE TABLE IF NOT EXISTS users (" +
+    static final List<Migration> MIGRATIONS = List.of(
+            Migration.of(1, "baseline tables",
+                    // Users
+                    "CREATE TABLE IF NOT EXISTS users (" +
                     "id BIGINT AUTO_INCREMENT PRIMARY KEY," +
                     "username VARCHAR(100) NOT NULL UNIQUE," +
                     "password_hash VARCHAR(255) NOT NULL," +
@@ -16,38 +24,139 @@ public class DatabaseInitializer {
                     "photo_path VARCHAR(255)," +
                     "official_email VARCHAR(255)," +
                     "registration_number VARCHAR(50)," +
-                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL) ");
-            try { st.executeUpdate("ALTER TABLE users ADD COLUMN IF NOT EXISTS official_email VARCHAR(255)"); } catch (SQLException ignore) {}
-            try { st.executeUpdate("ALTER TABLE users ADD COLUMN IF NOT EXISTS registration_number VARCHAR(50)"); } catch (SQLException ignore) {}
-
-            // Subjects
-            st.executeUpdate("CREATE TABLE IF NOT EXISTS subjects (" +
+                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL) ",
+                    // Subjects
+                    "CREATE TABLE IF NOT EXISTS subjects (" +
                     "id BIGINT AUTO_INCREMENT PRIMARY KEY," +
                     "name VARCHAR(255) NOT NULL," +
                     "code VARCHAR(50) NOT NULL UNIQUE," +
                     "description TEXT," +
-                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL)");
-
-            // QR codes
-            st.executeUpdate("CREATE TABLE IF NOT EXISTS qr_codes (" +
+                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL)",
+                    // QR codes
+                    "CREATE TABLE IF NOT EXISTS qr_codes (" +
                     "id BIGINT AUTO_INCREMENT PRIMARY KEY," +
                     "user_id BIGINT NOT NULL," +
                     "qr_data VARCHAR(255) NOT NULL," +
-                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL)");
-
-            // Attendance
-            st.executeUpdate("CREATE TABLE IF NOT EXISTS attendance_records (" +
+                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL)",
+                    // Attendance
+                    "CREATE TABLE IF NOT EXISTS attendance_records (" +
                     "id BIGINT AUTO_INCREMENT PRIMARY KEY," +
                     "user_id BIGINT NOT NULL," +
                     "subject_id BIGINT," +
                     "status VARCHAR(20) NOT NULL DEFAULT 'PRESENT'," +
                     "marked_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL," +
-                    "source VARCHAR(20) NOT NULL DEFAULT 'QR')");
-            try { st.executeUpdate("ALTER TABLE attendance_records ADD COLUMN IF NOT EXISTS subject_id BIGINT"); } catch (SQLException ignore) {}
-            try { st.executeUpdate("ALTER TABLE attendance_records ADD COLUMN IF NOT EXISTS check_in_photo_path TEXT"); } catch (SQLException ignore) {}
+                    "source VARCHAR(20) NOT NULL DEFAULT 'QR')"),
+            // Databases created before these columns were part of the baseline
+            new Migration(2, "user contact columns", c -> {
+                Migration.addColumnIfMissing(c, "users", "official_email", "VARCHAR(255)");
+                Migration.addColumnIfMissing(c, "users", "registration_number", "VARCHAR(50)");
+            }),
+            new Migration(3, "attendance subject and check-in photo", c -> {
+                Migration.addColumnIfMissing(c, "attendance_records", "subject_id", "BIGINT");
+                Migration.addColumnIfMissing(c, "attendance_records", "check_in_photo_path", "TEXT");
+            }),
+            // Persisted face templates (one per user), so reference photos are not re-processed on every start
+            Migration.of(4, "persisted face templates",
+                    "CREATE TABLE IF NOT EXISTS user_face_templates (" +
+                    "user_id BIGINT PRIMARY KEY," +
+                    "template_version INT NOT NULL," +
+                    "algorithm_id VARCHAR(100) NOT NULL," +
+                    "face_data BLOB NOT NULL," +
+                    "descriptors BLOB," +
+                    "descriptor_rows INT NOT NULL DEFAULT 0," +
+                    "descriptor_cols INT NOT NULL DEFAULT 0," +
+                    "keypoint_count INT NOT NULL DEFAULT 0," +
+                    "histogram BLOB," +
+                    "photo_hash VARCHAR(64) NOT NULL," +
+                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL)"),
+            // Per-day lookups filter on a plain DATE column instead of DATE(marked_at), which no index can serve
+            new Migration(5, "attendance_date column and per-day indexes", c -> {
+                Migration.addColumnIfMissing(c, "attendance_records", "attendance_date", "DATE");
+                backfillAttendanceDates(c);
+                Migration.createIndexIfMissing(c, "attendance_records", "idx_att_user_subject_date", "user_id, subject_id, attendance_date");
+                Migration.createIndexIfMissing(c, "attendance_records", "idx_att_date", "attendance_date");
+            }),
+            // One mark per user, subject and day, enforced by the database so concurrent check-ins cannot both
+            // insert. Existing duplicates keep their PRESENT mark, else the latest one; the others are moved to
+            // attendance_duplicates, not lost. Legacy rows without a subject are outside the key and untouched.
+            new Migration(6, "unique attendance per user, subject and day", c -> {
+                backfillAttendanceDates(c);
+                Migration.setNotNull(c, "attendance_records", "attendance_date", "DATE");
+                archiveDuplicateMarks(c);
+                Migration.createIndexIfMissing(c, "attendance_records", "uq_att_user_subject_date", "user_id, subject_id, attendance_date", true);
+                // The unique index serves the same lookups
+                Migration.dropIndexIfExists(c, "attendance_records", "idx_att_user_subject_date");
+            }));
+
+    private static final SchemaMigrator MIGRATOR = new SchemaMigrator(MIGRATIONS);
+    private static volatile boolean watchingRouter;
+
+    // Migrates the database connections currently go to, and whichever one the router switches to later,
+    // so a fallback that takes over mid-session has the same schema
+    public static void init() {
+        migrateCurrent();
+        if (!watchingRouter) {
+            watchingRouter = true;
+            Db.getRouter().addListener(state -> migrateCurrent());
+        }
+    }
+
+    // Brings the given database to the latest version; for tools that manage their own connection
+    public static int migrate(Connection c) throws SQLException {
+        return MIGRATOR.migrate(c);
+    }
+
+    // Computed in Java with AttendanceClock's zone, exactly like new marks; CAST(marked_at AS DATE) would
+    // use the database session's zone instead
+    private static void backfillAttendanceDates(Connection c) throws SQLException {
+        try (PreparedStatement select = c.prepareStatement("SELECT id, marked_at FROM attendance_records WHERE attendance_date IS NULL");
+             PreparedStatement update = c.prepareStatement("UPDATE attendance_records SET attendance_date = ? WHERE id = ?");
+             ResultSet rs = select.executeQuery()) {
+            int batched = 0;
+            while (rs.next()) {
+                update.setDate(1, Date.valueOf(AttendanceClock.dayOf(rs.getTimestamp(2).toInstant())));
+                update.setLong(2, rs.getLong(1));
+                update.addBatch();
+                if (++batched == 1000) {
+                    update.executeBatch();
+                    batched = 0;
+                }
+            }
+            if (batched > 0) update.executeBatch();
+        }
+    }
+
+    private static void archiveDuplicateMarks(Connection c) throws SQLException {
+        String duplicates = "SELECT id FROM (SELECT id, ROW_NUMBER() OVER (PARTITION BY user_id, subject_id, attendance_date " +
+                "ORDER BY CASE WHEN status = 'PRESENT' THEN 0 ELSE 1 END, marked_at DESC, id DESC) AS pos " +
+                "FROM attendance_records WHERE subject_id IS NOT NULL) ranked WHERE pos > 1";
+        try (Statement st = c.createStatement()) {
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS attendance_duplicates (" +
+                    "id BIGINT PRIMARY KEY," +
+                    "user_id BIGINT NOT NULL," +
+                    "subject_id BIGINT," +
+                    "status VARCHAR(20) NOT NULL," +
+                    "marked_at TIMESTAMP NOT NULL," +
+                    "source VARCHAR(20) NOT NULL," +
+                    "check_in_photo_path TEXT," +
+                    "attendance_date DATE NOT NULL," +
+                    "archived_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL)");
+            int archived = st.executeUpdate("INSERT INTO attendance_duplicates(id, user_id, subject_id, status, marked_at, " +
+                    "source, check_in_photo_path, attendance_date) SELECT id, user_id, subject_id, status, marked_at, source, " +
+                    "check_in_photo_path, attendance_date FROM attendance_records WHERE id IN (" + duplicates + ")");
+            if (archived == 0) return;
+            st.executeUpdate("DELETE FROM attendance_records WHERE id IN (SELECT id FROM attendance_duplicates)");
+            System.err.println("Warning: moved " + archived + " duplicate attendance marks to attendance_duplicates "
+                    + "(kept the PRESENT, else the latest, mark of each user, subject and day)");
+        }
+    }
+
+    private static synchronized void migrateCurrent() {
+        try (Connection c = Db.getConnection()) {
+            MIGRATOR.migrate(c);
         } catch (SQLException e) {
             // Let callers handle UI errors; for now, print stack trace for dev visibility
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+}
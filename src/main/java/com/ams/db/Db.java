@@ -3,7 +3,6 @@ package com.ams.db;
 import com.ams.config.Config;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class Db {
@@ -23,21 +22,33 @@ public class Db {
         }
     }
 
+    // Pools are built on first use from db.* and db.pool.* settings, which are read once; the router
+    // health-checks the primary in the background and sends callers to the embedded H2 fallback
+    // (for local dev without MySQL credentials) while it is down
+    private static final class Holder {
+        static final DataSourceRouter ROUTER = new DataSourceRouter(
+                new ConnectionPool("primary",
+                        Config.get("db.url", "jdbc:mysql://localhost:3306/attendance_db?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true"),
+                        Config.get("db.user", "attendance_user"),
+                        Config.get("db.password", "change_me"),
+                        ConnectionPool.Settings.fromConfig("db.pool", ConnectionPool.DEFAULTS)),
+                new ConnectionPool("fallback",
+                        "jdbc:h2:file:./devdb;AUTO_SERVER=TRUE;MODE=MySQL;DATABASE_TO_UPPER=false", "sa", "",
+                        ConnectionPool.Settings.fromConfig("db.pool", ConnectionPool.DEFAULTS)));
+    }
+
     public static Connection getConnection() throws SQLException {
-        String url = Config.get("db.url", "jdbc:mysql://localhost:3306/attendance_db?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true");
-        String user = Config.get("db.user", "attendance_user");
-        String pass = Config.get("db.password", "change_me");
-        try {
-            return DriverManager.getConnection(url, user, pass);
-        } catch (SQLException e) {
-            // Fallback to embedded H2 for local dev so the app can run without MySQL credentials
-            String h2Url = "jdbc:h2:file:./devdb;AUTO_SERVER=TRUE;MODE=MySQL;DATABASE_TO_UPPER=false";
-            try {
-                return DriverManager.getConnection(h2Url, "sa", "");
-            } catch (SQLException h2e) {
-                // If fallback also fails, bubble the original MySQL exception for clarity
-                throw e;
-            }
-        }
+        return Holder.ROUTER.getConnection();
+    }
+
+    // Which database connections currently go to; listeners are told about every switch
+    public static DataSourceRouter getRouter() {
+        return Holder.ROUTER;
+    }
+
+    // Statistics of the pool connections currently come from, for sizing db.pool.maxSize
+    public static ConnectionPool.Stats getPoolStats() {
+        DataSourceRouter router = Holder.ROUTER;
+        return router.getPool(router.getTarget()).getStats();
     }
 }
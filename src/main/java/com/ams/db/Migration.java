@@ -0,0 +1,94 @@
+package com.ams.db;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// One versioned schema change. Versions are applied in ascending order, each exactly once per
+// database, and recorded in schema_version. Steps must be safe on databases that were created before
+// migrations existed (CREATE ... IF NOT EXISTS, addColumnIfMissing), since those start at version 0.
+public record Migration(int version, String description, Step step) {
+
+    @FunctionalInterface
+    public interface Step {
+        void apply(Connection c) throws SQLException;
+    }
+
+    // Migration made of plain SQL statements
+    public static Migration of(int version, String description, String... statements) {
+        return new Migration(version, description, c -> {
+            try (Statement st = c.createStatement()) {
+                for (String sql : statements) st.executeUpdate(sql);
+            }
+        });
+    }
+
+    // Portable across MySQL and H2: MySQL has no ADD COLUMN IF NOT EXISTS
+    public static void addColumnIfMissing(Connection c, String table, String column, String definition) throws SQLException {
+        if (hasColumn(c, table, column)) return;
+        try (Statement st = c.createStatement()) {
+            st.executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        }
+    }
+
+    // MySQL has no CREATE INDEX IF NOT EXISTS either
+    public static void createIndexIfMissing(Connection c, String table, String index, String columns) throws SQLException {
+        createIndexIfMissing(c, table, index, columns, false);
+    }
+
+    public static void createIndexIfMissing(Connection c, String table, String index, String columns, boolean unique) throws SQLException {
+        if (hasIndex(c, table, index)) return;
+        try (Statement st = c.createStatement()) {
+            st.executeUpdate("CREATE " + (unique ? "UNIQUE " : "") + "INDEX " + index + " ON " + table + " (" + columns + ")");
+        }
+    }
+
+    // MySQL wants DROP INDEX ... ON <table>, H2 a bare DROP INDEX
+    public static void dropIndexIfExists(Connection c, String table, String index) throws SQLException {
+        if (!hasIndex(c, table, index)) return;
+        try (Statement st = c.createStatement()) {
+            st.executeUpdate("DROP INDEX " + index + " ON " + table);
+        } catch (SQLException e) {
+            try (Statement st = c.createStatement()) {
+                st.executeUpdate("DROP INDEX " + index);
+            }
+        }
+    }
+
+    // MySQL redefines the column with MODIFY, H2 sets the constraint on its own
+    public static void setNotNull(Connection c, String table, String column, String type) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.executeUpdate("ALTER TABLE " + table + " MODIFY " + column + " " + type + " NOT NULL");
+        } catch (SQLException e) {
+            try (Statement st = c.createStatement()) {
+                st.executeUpdate("ALTER TABLE " + table + " ALTER COLUMN " + column + " SET NOT NULL");
+            }
+        }
+    }
+
+    public static boolean hasIndex(Connection c, String table, String index) throws SQLException {
+        DatabaseMetaData meta = c.getMetaData();
+        for (String t : new String[]{table, table.toUpperCase()}) {
+            try (ResultSet rs = meta.getIndexInfo(c.getCatalog(), null, t, false, true)) {
+                while (rs.next()) {
+                    if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public static boolean hasColumn(Connection c, String table, String column) throws SQLException {
+        DatabaseMetaData meta = c.getMetaData();
+        for (String t : new String[]{table, table.toUpperCase()}) {
+            for (String col : new String[]{column, column.toUpperCase()}) {
+                try (ResultSet rs = meta.getColumns(c.getCatalog(), null, t, col)) {
+                    if (rs.next()) return true;
+                }
+            }
+        }
+        return false;
+    }
+}
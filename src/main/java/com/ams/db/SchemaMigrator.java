@@ -0,0 +1,68 @@
+package com.ams.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.List;
+
+// Brings a database up to the latest schema version: reads the highest version recorded in
+// schema_version and applies every newer migration in order, recording each one as it completes.
+// An up-to-date database costs a single query, so this runs at startup and never on DAO paths.
+public class SchemaMigrator {
+    private final List<Migration> migrations;
+
+    public SchemaMigrator(List<Migration> migrations) {
+        this.migrations = migrations.stream().sorted(Comparator.comparingInt(Migration::version)).toList();
+    }
+
+    public int latestVersion() {
+        return migrations.isEmpty() ? 0 : migrations.get(migrations.size() - 1).version();
+    }
+
+    // Returns the number of migrations applied
+    public int migrate(Connection c) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INT PRIMARY KEY," +
+                    "description VARCHAR(255) NOT NULL," +
+                    "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL)");
+        }
+        int current = currentVersion(c);
+        int applied = 0;
+        for (Migration m : migrations) {
+            if (m.version() <= current) continue;
+            long start = System.nanoTime();
+            boolean autoCommit = c.getAutoCommit();
+            c.setAutoCommit(false);
+            try {
+                // MySQL commits DDL implicitly; H2 and data-only steps get a real transaction
+                m.step().apply(c);
+                try (PreparedStatement ps = c.prepareStatement("INSERT INTO schema_version(version, description) VALUES(?,?)")) {
+                    ps.setInt(1, m.version());
+                    ps.setString(2, m.description());
+                    ps.executeUpdate();
+                }
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw new SQLException("Schema migration " + m.version() + " (" + m.description() + ") failed: " + e.getMessage(), e);
+            } finally {
+                c.setAutoCommit(autoCommit);
+            }
+            applied++;
+            System.out.println("Applied schema migration " + m.version() + ": " + m.description()
+                    + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+        return applied;
+    }
+
+    public static int currentVersion(Connection c) throws SQLException {
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT MAX(version) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
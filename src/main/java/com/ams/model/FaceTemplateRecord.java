@@ -0,0 +1,52 @@
+package com.ams.model;
+
+import java.time.Instant;
+
+public class FaceTemplateRecord {
+    private long userId;
+    private int templateVersion;
+    private String algorithmId;
+    private byte[] faceData; // normalized 128x128 grayscale face
+    private byte[] descriptors; // ORB descriptors, descriptorRows x descriptorCols bytes
+    private int descriptorRows;
+    private int descriptorCols;
+    private int keypointCount;
+    private byte[] histogram; // 256 little-endian floats
+    private String photoHash; // SHA-256 of the source photo file
+    private Instant createdAt;
+
+    public FaceTemplateRecord() {}
+
+    public long getUserId() { return userId; }
+    public void setUserId(long userId) { this.userId = userId; }
+
+    public int getTemplateVersion() { return templateVersion; }
+    public void setTemplateVersion(int templateVersion) { this.templateVersion = templateVersion; }
+
+    public String getAlgorithmId() { return algorithmId; }
+    public void setAlgorithmId(String algorithmId) { this.algorithmId = algorithmId; }
+
+    public byte[] getFaceData() { return faceData; }
+    public void setFaceData(byte[] faceData) { this.faceData = faceData; }
+
+    public byte[] getDescriptors() { return descriptors; }
+    public void setDescriptors(byte[] descriptors) { this.descriptors = descriptors; }
+
+    public int getDescriptorRows() { return descriptorRows; }
+    public void setDescriptorRows(int descriptorRows) { this.descriptorRows = descriptorRows; }
+
+    public int getDescriptorCols() { return descriptorCols; }
+    public void setDescriptorCols(int descriptorCols) { this.descriptorCols = descriptorCols; }
+
+    public int getKeypointCount() { return keypointCount; }
+    public void setKeypointCount(int keypointCount) { this.keypointCount = keypointCount; }
+
+    public byte[] getHistogram() { return histogram; }
+    public void setHistogram(byte[] histogram) { this.histogram = histogram; }
+
+    public String getPhotoHash() { return photoHash; }
+    public void setPhotoHash(String photoHash) { this.photoHash = photoHash; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+}
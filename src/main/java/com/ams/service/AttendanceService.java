@@ -5,6 +5,13 @@ import com.ams.dao.AttendanceDao;
 import java.sql.SQLException;
 
 public class AttendanceService {
+    // A second mark for the same user, subject and day; callers report it instead of failing
+    public static class AlreadyMarkedException extends RuntimeException {
+        public AlreadyMarkedException(Throwable cause) {
+            super("Attendance already marked for this subject today. Only one attendance per subject per day is allowed.", cause);
+        }
+    }
+
     private final AttendanceDao attendanceDao = new AttendanceDao();
 
     public void markPresent(long userId, long subjectId, String source) {
@@ -26,6 +33,8 @@ public class AttendanceService {
     public void markStatus(long userId, long subjectId, String status, String source) {
         try {
             attendanceDao.insert(userId, subjectId, status, source);
+        } catch (AttendanceDao.AlreadyMarkedException e) {
+            throw new AlreadyMarkedException(e);
         } catch (SQLException e) {
             throw new RuntimeException("Failed to mark attendance", e);
         }
@@ -34,6 +43,8 @@ public class AttendanceService {
     public void markStatus(long userId, long subjectId, String status, String source, String checkInPhotoPath) {
         try {
             attendanceDao.insert(userId, subjectId, status, source, checkInPhotoPath);
+        } catch (AttendanceDao.AlreadyMarkedException e) {
+            throw new AlreadyMarkedException(e);
         } catch (SQLException e) {
             throw new RuntimeException("Failed to mark attendance", e);
         }
@@ -47,17 +58,13 @@ public class AttendanceService {
         }
     }
     
+    // A single INSERT: the database's unique key decides atomically whether today's mark already exists,
+    // so two kiosks (or a kiosk and an admin) cannot both record one. Throws AlreadyMarkedException if it does.
     public void markPresentWithCheck(long userId, long subjectId, String source, String checkInPhotoPath) {
-        if (hasAttendanceToday(userId, subjectId)) {
-            throw new RuntimeException("Attendance already marked for this subject today. Only one attendance per subject per day is allowed.");
-        }
         markPresent(userId, subjectId, source, checkInPhotoPath);
     }
     
     public void markAbsentWithCheck(long userId, long subjectId, String source, String checkInPhotoPath) {
-        if (hasAttendanceToday(userId, subjectId)) {
-            throw new RuntimeException("Attendance already marked for this subject today. Only one attendance per subject per day is allowed.");
-        }
         markAbsent(userId, subjectId, source, checkInPhotoPath);
     }
     
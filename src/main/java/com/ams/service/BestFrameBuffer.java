@@ -0,0 +1,119 @@
+package com.ams.service;
+
+import com.ams.config.Config;
+import com.ams.util.CameraUtil;
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.javacpp.indexer.DoubleIndexer;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.bytedeco.opencv.opencv_core.Size;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+// Rolling buffer of the most recent frames that contained a face, each with a cheap quality score,
+// so a capture verifies the best recent frame instead of whatever the camera returns at click time.
+// Score = 0.5 sharpness (Laplacian variance of the face, log-scaled) + 0.25 face size + 0.25 centering.
+public class BestFrameBuffer {
+    private static final int FACE_SAMPLE_WIDTH = 96;
+    // Laplacian variance treated as perfectly sharp; typical in-focus faces score 200-1500
+    private static final double SHARP_VARIANCE = 1000.0;
+    // Face spanning this fraction of the frame width scores full marks for size
+    private static final double IDEAL_FACE_FRACTION = 0.4;
+
+    public static final class Entry {
+        private final BufferedImage image;
+        private final Rectangle face;
+        private final double score;
+        private final long timestamp;
+
+        Entry(BufferedImage image, Rectangle face, double score, long timestamp) {
+            this.image = image;
+            this.face = face;
+            this.score = score;
+            this.timestamp = timestamp;
+        }
+
+        public BufferedImage getImage() { return image; }
+        public Rectangle getFace() { return new Rectangle(face); }
+        public double getScore() { return score; }
+    }
+
+    private final Entry[] ring;
+    private final long maxAgeMillis;
+    private int next;
+
+    public BestFrameBuffer() {
+        this(Integer.parseInt(Config.get("face.bestFrame.size", "8")),
+                Long.parseLong(Config.get("face.bestFrame.maxAgeMillis", "1000")));
+    }
+
+    public BestFrameBuffer(int capacity, long maxAgeMillis) {
+        this.ring = new Entry[Math.max(1, capacity)];
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    // Scores and keeps a frame whose face was located by the detector or tracker
+    public void add(BufferedImage image, Rectangle face) {
+        if (image == null || face == null) return;
+        double score = score(image, face);
+        synchronized (this) {
+            ring[next] = new Entry(image, new Rectangle(face), score, System.currentTimeMillis());
+            next = (next + 1) % ring.length;
+        }
+    }
+
+    // Highest-scoring frame not older than the max age, or null
+    public synchronized Entry best() {
+        long oldest = System.currentTimeMillis() - maxAgeMillis;
+        Entry best = null;
+        for (Entry e : ring) {
+            if (e != null && e.timestamp >= oldest && (best == null || e.score > best.score)) best = e;
+        }
+        return best;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(ring, null);
+        next = 0;
+    }
+
+    public static double score(BufferedImage image, Rectangle face) {
+        double w = image.getWidth();
+        double h = image.getHeight();
+        Rectangle inside = face.intersection(new Rectangle(0, 0, image.getWidth(), image.getHeight()));
+        if (inside.isEmpty()) return 0;
+
+        double size = Math.min(1.0, inside.width / (w * IDEAL_FACE_FRACTION));
+        double dx = (inside.getCenterX() - w / 2) / (w / 2);
+        double dy = (inside.getCenterY() - h / 2) / (h / 2);
+        double centering = Math.max(0, 1 - Math.sqrt(dx * dx + dy * dy));
+        double sharp = Math.min(1.0, Math.log1p(sharpness(image, inside)) / Math.log1p(SHARP_VARIANCE));
+        return 0.5 * sharp + 0.25 * size + 0.25 * centering;
+    }
+
+    // Variance of the Laplacian over the face, sampled at a fixed width so scores are comparable across face sizes
+    static double sharpness(BufferedImage image, Rectangle face) {
+        try (PointerScope scope = new PointerScope()) {
+            Mat bgr = CameraUtil.bufferedImageToMat(image);
+            Mat crop = new Mat(bgr, new Rect(face.x, face.y, face.width, face.height));
+            Mat gray = new Mat();
+            opencv_imgproc.cvtColor(crop, gray, opencv_imgproc.COLOR_BGR2GRAY);
+            int sampleHeight = Math.max(1, face.height * FACE_SAMPLE_WIDTH / Math.max(1, face.width));
+            Mat sample = new Mat();
+            opencv_imgproc.resize(gray, sample, new Size(FACE_SAMPLE_WIDTH, sampleHeight), 0, 0, opencv_imgproc.INTER_AREA);
+            Mat lap = new Mat();
+            opencv_imgproc.Laplacian(sample, lap, opencv_core.CV_64F);
+            Mat mean = new Mat();
+            Mat stddev = new Mat();
+            opencv_core.meanStdDev(lap, mean, stddev);
+            try (DoubleIndexer idx = stddev.createIndexer()) {
+                double sd = idx.get(0);
+                return sd * sd;
+            }
+        }
+    }
+}
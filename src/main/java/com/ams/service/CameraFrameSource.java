@@ -0,0 +1,88 @@
+package com.ams.service;
+
+import com.ams.util.CameraUtil;
+import com.github.sarxos.webcam.Webcam;
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.opencv.global.opencv_videoio;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_videoio.VideoCapture;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.List;
+
+// Live camera: OpenCV VideoCapture, falling back to webcam-capture (used first on Windows, where it
+// has better camera compatibility), negotiated to 640x480 at 30 fps
+public class CameraFrameSource implements FrameSource {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+
+    private final int index;
+    private VideoCapture videoCapture;
+    private Webcam webcam;
+
+    public CameraFrameSource(int index) throws IOException {
+        this.index = index;
+        boolean isWindows = System.getProperty("os.name").toLowerCase().contains("windows");
+        if (!isWindows) {
+            System.out.println("Attempting to open camera with OpenCV, index: " + index);
+            VideoCapture vc = new VideoCapture(index);
+            if (vc.isOpened()) {
+                vc.set(opencv_videoio.CAP_PROP_FRAME_WIDTH, WIDTH);
+                vc.set(opencv_videoio.CAP_PROP_FRAME_HEIGHT, HEIGHT);
+                vc.set(opencv_videoio.CAP_PROP_FPS, 30);
+                videoCapture = vc;
+                System.out.println("OpenCV camera opened successfully");
+                return;
+            }
+            System.out.println("OpenCV VideoCapture failed, trying webcam-capture library");
+            vc.release();
+        }
+        List<Webcam> webcams = Webcam.getWebcams();
+        System.out.println("Found " + webcams.size() + " webcam(s)");
+        Webcam cam = index < webcams.size() ? webcams.get(index) : Webcam.getDefault();
+        if (cam == null) throw new IOException("No webcam detected");
+        cam.setViewSize(chooseViewSize(cam.getViewSizes()));
+        System.out.println("Opening webcam: " + cam.getName());
+        cam.open();
+        if (!cam.isOpen()) throw new IOException("Failed to open camera; it may be in use by another application");
+        webcam = cam;
+    }
+
+    @Override
+    public boolean read(Mat frame) {
+        if (videoCapture != null) return videoCapture.read(frame) && !frame.empty();
+        BufferedImage img = webcam.getImage();
+        if (img == null) return false;
+        try (PointerScope scope = new PointerScope()) {
+            CameraUtil.bufferedImageToMat(img).copyTo(frame);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isLive() { return true; }
+
+    @Override
+    public String describe() { return "camera " + index + (videoCapture != null ? " (OpenCV)" : " (webcam-capture)"); }
+
+    @Override
+    public void close() {
+        try { if (videoCapture != null) videoCapture.release(); } catch (Exception ignore) {}
+        try { if (webcam != null && webcam.isOpen()) webcam.close(); } catch (Exception ignore) {}
+        videoCapture = null;
+        webcam = null;
+    }
+
+    // 640x480 if offered, otherwise the largest size up to 800 pixels wide
+    private static Dimension chooseViewSize(Dimension[] sizes) {
+        Dimension target = new Dimension(WIDTH, HEIGHT);
+        Dimension selected = sizes.length > 0 ? sizes[0] : target;
+        for (Dimension size : sizes) {
+            if (size.equals(target)) return size;
+            if (size.width <= 800 && size.width > selected.width) selected = size;
+        }
+        return selected;
+    }
+}
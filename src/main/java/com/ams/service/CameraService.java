@@ -0,0 +1,297 @@
+package com.ams.service;
+
+import com.ams.config.Config;
+import com.ams.util.CameraUtil;
+import com.ams.util.Metrics;
+import com.github.sarxos.webcam.Webcam;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// Process-wide owner of one camera device; there is one instance per device index. The frame source
+// (the camera, or a recording per camera.source) is opened once and a single capture thread publishes
+// every frame to the current subscribers, each throttled to its own maximum rate. When the last user
+// releases the camera it stays open for camera.idleCloseSeconds so the next check-in starts instantly.
+public class CameraService {
+    private static final long IDLE_CLOSE_SECONDS = Long.parseLong(Config.get("camera.idleCloseSeconds", "300"));
+    private static final Map<Integer, CameraService> DEVICES = new ConcurrentHashMap<>();
+    private static final long DISCOVERY_TIMEOUT_MILLIS = 3000;
+    // How long acquire() waits for the previous capture thread to let go of the device
+    private static final long CAPTURE_EXIT_TIMEOUT_MILLIS = 2000;
+    private static volatile List<Integer> available;
+
+    // Receives frames on the capture thread. The Mat is only valid during the call: copy what must be kept,
+    // and hand slow work to another thread (e.g. a LatestFrameWorker) so other subscribers are not delayed.
+    public interface FrameListener {
+        void onFrame(Mat frame, long captureNanos);
+    }
+
+    public final class Subscription implements AutoCloseable {
+        private final String name;
+        private final FrameListener listener;
+        private final long minIntervalNanos;
+        private long lastDelivered = Long.MIN_VALUE / 2;
+        private long delivered;
+        private boolean closed;
+
+        private Subscription(String name, FrameListener listener, double maxFps) {
+            this.name = name;
+            this.listener = listener;
+            this.minIntervalNanos = maxFps > 0 ? (long) (1_000_000_000L / maxFps) : 0;
+        }
+
+        public String getName() { return name; }
+
+        public synchronized long getDelivered() { return delivered; }
+
+        // Delivery holds this monitor, so once close() returns the listener is never called again
+        private synchronized void deliver(Mat frame, long now) {
+            if (closed || now - lastDelivered < minIntervalNanos) return;
+            lastDelivered = now;
+            delivered++;
+            try {
+                listener.onFrame(frame, now);
+            } catch (RuntimeException e) {
+                System.err.println("Frame subscriber " + name + " failed: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() {
+            subscribers.remove(this);
+            synchronized (this) {
+                closed = true;
+            }
+        }
+    }
+
+    private final List<Subscription> subscribers = new CopyOnWriteArrayList<>();
+    private static final ScheduledExecutorService IDLE_CLOSER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "camera-idle-closer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final int deviceIndex;
+    // Device state, guarded by this. The capture thread owns the source and the frame Mats: it alone
+    // closes them, once its loop has exited, so a read or delivery in progress never races a close.
+    // The thread runs while source is its own source; clearing source asks it to stop.
+    private volatile FrameSource source;
+    private int users;
+    private ScheduledFuture<?> pendingClose;
+    // The capture thread until it has released the device; it clears this itself on exit
+    private Thread captureThread;
+
+    // Latest frame for snapshots; the capture thread fills the other Mat and swaps under frameLock
+    private final Object frameLock = new Object();
+    private Mat front;
+    private long frameCount;
+
+    // Smoothed frame rate and read() latency
+    private volatile double fps;
+    private volatile double latencyMillis;
+
+    private CameraService(int deviceIndex) {
+        this.deviceIndex = deviceIndex;
+        Metrics.gauge("camera." + deviceIndex + ".fps", () -> fps);
+        Metrics.gauge("camera." + deviceIndex + ".latencyMillis", () -> latencyMillis);
+    }
+
+    // The shared service of a device; every panel using the same device shares its frames
+    public static CameraService forDevice(int index) {
+        return DEVICES.computeIfAbsent(index, CameraService::new);
+    }
+
+    // Device indexes offered for selection: camera.devices (e.g. "0,1,2") when set, otherwise the
+    // webcams found on the first call (at least device 0, which may still be a recording)
+    public static List<Integer> availableDevices() {
+        List<Integer> devices = available;
+        if (devices != null) return devices;
+        String configured = Config.get("camera.devices", "");
+        if (!configured.isBlank()) {
+            devices = Arrays.stream(configured.split(",")).map(String::trim).map(Integer::valueOf).toList();
+        } else {
+            int count = 0;
+            try {
+                count = Webcam.getWebcams(DISCOVERY_TIMEOUT_MILLIS).size();
+            } catch (Exception | LinkageError e) {
+                System.err.println("Camera discovery failed: " + e.getMessage());
+            }
+            devices = IntStream.range(0, Math.max(1, count)).boxed().toList();
+        }
+        available = devices;
+        return devices;
+    }
+
+    public int getDeviceIndex() { return deviceIndex; }
+
+    // Opens (or reuses) the device and registers the caller as a user; pair with release()
+    public synchronized void acquire() throws IOException {
+        if (pendingClose != null) {
+            pendingClose.cancel(false);
+            pendingClose = null;
+        }
+        if (!isOpen()) {
+            awaitCaptureExit();
+            openDevice();
+        }
+        users++;
+    }
+
+    // The device stays warm for camera.idleCloseSeconds after the last user leaves
+    public synchronized void release() {
+        if (users == 0) return;
+        if (--users > 0) return;
+        if (IDLE_CLOSE_SECONDS <= 0) {
+            closeDevice();
+        } else {
+            pendingClose = IDLE_CLOSER.schedule(this::closeIfIdle, IDLE_CLOSE_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    public synchronized boolean isOpen() {
+        return source != null;
+    }
+
+    // maxFps <= 0 delivers every captured frame
+    public Subscription subscribe(String name, double maxFps, FrameListener listener) {
+        Subscription s = new Subscription(name, listener, maxFps);
+        subscribers.add(s);
+        return s;
+    }
+
+    // Copy of the most recent frame, or null before the first frame arrives
+    public BufferedImage snapshot() {
+        synchronized (frameLock) {
+            return front != null && !front.empty() ? CameraUtil.matToBufferedImage(front) : null;
+        }
+    }
+
+    public double getMeasuredFps() { return fps; }
+
+    public double getCaptureLatencyMillis() { return latencyMillis; }
+
+    public long getFrameCount() {
+        synchronized (frameLock) {
+            return frameCount;
+        }
+    }
+
+    private void openDevice() throws IOException {
+        FrameSource src = FrameSource.fromConfig(deviceIndex);
+        System.out.println("Frame source " + deviceIndex + ": " + src.describe());
+        source = src;
+        Thread t = new Thread(() -> captureLoop(src), "camera-capture-" + deviceIndex);
+        t.setDaemon(true);
+        captureThread = t;
+        t.start();
+    }
+
+    private synchronized void closeIfIdle() {
+        pendingClose = null;
+        if (users == 0) closeDevice();
+    }
+
+    // Asks the capture thread to stop and waits briefly; a read still blocked in the device finishes on
+    // its own, and the thread then frees the frames and closes the source
+    private synchronized void closeDevice() {
+        source = null;
+        if (captureThread != Thread.currentThread() && !awaitCaptureExitQuietly()) {
+            System.err.println("Camera " + deviceIndex + " capture thread still busy; closing it in the background");
+        }
+        System.out.println("Camera " + deviceIndex + " closed");
+    }
+
+    // The device cannot be opened twice, so a new capture thread only starts once the old one has exited
+    private void awaitCaptureExit() throws IOException {
+        if (!awaitCaptureExitQuietly()) {
+            throw new IOException("Camera " + deviceIndex + " is still being released by its previous capture thread");
+        }
+    }
+
+    // Waits on this monitor, so the exiting capture thread can take it to clear captureThread
+    private boolean awaitCaptureExitQuietly() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CAPTURE_EXIT_TIMEOUT_MILLIS);
+        try {
+            while (captureThread != null) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) return false;
+                wait(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return captureThread == null;
+        }
+        return true;
+    }
+
+    private void captureLoop(FrameSource src) {
+        Mat back = new Mat();
+        long lastFrame = 0;
+        try {
+            while (source == src) {
+                long start = System.nanoTime();
+                boolean ok = src.read(back);
+                long now = System.nanoTime();
+                if (!ok) {
+                    if (!src.isLive()) {
+                        System.out.println("Frame source finished: " + src.describe());
+                        break;
+                    }
+                    Thread.sleep(10);
+                    continue;
+                }
+                latencyMillis = smooth(latencyMillis, (now - start) / 1_000_000.0);
+                if (lastFrame != 0) fps = smooth(fps, 1_000_000_000.0 / Math.max(1, now - lastFrame));
+                lastFrame = now;
+
+                Mat published;
+                synchronized (frameLock) {
+                    published = back;
+                    back = front != null ? front : new Mat();
+                    front = published;
+                    frameCount++;
+                }
+                for (Subscription s : subscribers) s.deliver(published, now);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            System.err.println("Camera capture stopped: " + e.getMessage());
+        } finally {
+            // Subscribers only see frames during delivery on this thread, so nothing else can be using them now
+            back.close();
+            synchronized (frameLock) {
+                if (front != null) front.close();
+                front = null;
+            }
+            try {
+                src.close();
+            } catch (RuntimeException e) {
+                System.err.println("Failed to close frame source: " + e.getMessage());
+            }
+            // A recording that ran out (or a failed device) leaves the service closed, so the next acquire()
+            // reopens it instead of waiting on a source that will never deliver again
+            synchronized (this) {
+                if (source == src) source = null;
+                if (captureThread == Thread.currentThread()) captureThread = null;
+                notifyAll();
+            }
+        }
+    }
+
+    private static double smooth(double previous, double sample) {
+        return previous == 0 ? sample : previous * 0.9 + sample * 0.1;
+    }
+}
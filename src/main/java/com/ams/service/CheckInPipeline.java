@@ -0,0 +1,319 @@
+package com.ams.service;
+
+import com.ams.config.Config;
+import com.ams.model.User;
+import com.ams.util.CameraUtil;
+import com.ams.util.Metrics;
+import org.bytedeco.javacpp.PointerScope;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// Runs a check-in attempt off the EDT as explicit stages (check -> capture -> detect -> verify ->
+// record), each on the pipeline executor. A job can be cancelled up to the record stage; once the
+// attendance write has started it completes. Progress is reported per stage so the UI can show it.
+public class CheckInPipeline {
+    public enum Stage { CHECKING, CAPTURING, DETECTING, VERIFYING, IDENTIFYING, RECORDING }
+
+    public enum Outcome { PRESENT, ABSENT, ALREADY_MARKED, NO_FRAME, NO_FACE, NOT_VERIFIED, NOT_IDENTIFIED, SUPPRESSED }
+
+    public static final class Result {
+        private final Outcome outcome;
+        private final User user;
+        private final String photoPath;
+        private final VerificationResult verification;
+
+        Result(Outcome outcome, User user, String photoPath, VerificationResult verification) {
+            this.outcome = outcome;
+            this.user = user;
+            this.photoPath = photoPath;
+            this.verification = verification;
+        }
+
+        public Outcome getOutcome() { return outcome; }
+        public User getUser() { return user; }
+        public String getPhotoPath() { return photoPath; }
+        public VerificationResult getVerification() { return verification; }
+    }
+
+    // A frame with the face already located on it (full-frame coordinates), e.g. a buffered best frame
+    // and the rectangle the preview tracker found; a null face is detected by the pipeline
+    public record Capture(BufferedImage image, Rectangle face) {}
+
+    // Handle of one running attempt
+    public static final class Job {
+        private volatile boolean cancelled;
+        private CompletableFuture<Result> future;
+
+        public CompletableFuture<Result> future() { return future; }
+
+        public boolean isCancelled() { return cancelled; }
+
+        // Stages not yet started are skipped and the future completes with a CancellationException
+        public void cancel() { cancelled = true; }
+    }
+
+    private static final Path DEFAULT_PHOTO_DIR = Path.of("captured");
+    private static final AtomicInteger THREADS = new AtomicInteger();
+    // Shared by every panel and kiosk: one verification thread per core and a bounded queue. Overflow is
+    // rejected, never run on the submitting thread (often the EDT): the attempt fails as busy (see isBusy)
+    // and the caller tries again later, so a saturated box sheds work instead of piling it up
+    private static final int THREAD_COUNT = Integer.parseInt(Config.get("checkin.threads",
+            String.valueOf(Runtime.getRuntime().availableProcessors())));
+    private static final ThreadPoolExecutor SHARED_EXECUTOR = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT,
+            0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(Integer.parseInt(Config.get("checkin.queueCapacity", "64"))), r -> {
+        Thread t = new Thread(r, "check-in-" + THREADS.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    }, (r, pool) -> {
+        Metrics.increment("checkin.rejected");
+        throw new RejectedExecutionException("check-in pool is busy");
+    });
+
+    static {
+        Metrics.gauge("checkin.pool.active", SHARED_EXECUTOR::getActiveCount);
+        Metrics.gauge("checkin.pool.queued", () -> SHARED_EXECUTOR.getQueue().size());
+        // Failed 1:1 attempts per successful check-in; each retry costs the student a full verification pass
+        Metrics.gauge("checkin.retriesPerSuccess", () -> {
+            long present = Metrics.counter("checkin.present").sum();
+            return present == 0 ? Double.NaN : (double) (Metrics.counter("checkin.attempts").sum() - present) / present;
+        });
+    }
+
+    private final FaceService faceService;
+    private final FaceGallery faceGallery;
+    private final AttendanceService attendanceService;
+    private final ExecutorService executor;
+    // Where check-in photos are written when attendance is recorded; null keeps no photo
+    private final Path photoDir;
+
+    public CheckInPipeline(FaceService faceService, FaceGallery faceGallery, AttendanceService attendanceService) {
+        this(faceService, faceGallery, attendanceService, SHARED_EXECUTOR, DEFAULT_PHOTO_DIR);
+    }
+
+    public CheckInPipeline(FaceService faceService, FaceGallery faceGallery, AttendanceService attendanceService,
+                           ExecutorService executor, Path photoDir) {
+        this.faceService = faceService;
+        this.faceGallery = faceGallery;
+        this.attendanceService = attendanceService;
+        this.executor = executor;
+        this.photoDir = photoDir;
+    }
+
+    // Stage tasks waiting for a thread of the shared pool, across all cameras
+    public static int getSharedQueueDepth() { return SHARED_EXECUTOR.getQueue().size(); }
+
+    public static int getSharedPoolSize() { return THREAD_COUNT; }
+
+    // True when an attempt failed because the pool was saturated; nothing was recorded and it can be retried
+    public static boolean isBusy(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof RejectedExecutionException) return true;
+        }
+        return false;
+    }
+
+    // 1:1 check-in of a known user; on the last attempt a failed detection or verification records ABSENT
+    public Job verify(User user, long subjectId, boolean lastAttempt, Supplier<BufferedImage> frames,
+                      FaceTracker tracker, Consumer<Stage> progress) {
+        Attempt a = new Attempt(new Job(), progress);
+        a.user = user;
+        a.counted = true;
+        a.job.future = begin(() -> a.check(subjectId))
+                .thenApplyAsync(x -> a.capture(frames), executor)
+                .thenApplyAsync(x -> a.detect(tracker), executor)
+                .thenApplyAsync(x -> a.verify(), executor)
+                .thenApplyAsync(x -> a.record(subjectId, lastAttempt), executor);
+        return a.job;
+    }
+
+    // Same, for captures that carry their face rectangle; one without a face is detected on a tracker of
+    // this attempt's own, so a caller's live preview tracker is never fed frames from the pipeline
+    public Job verify(User user, long subjectId, boolean lastAttempt, Supplier<Capture> captures,
+                      Consumer<Stage> progress) {
+        Attempt a = new Attempt(new Job(), progress);
+        a.user = user;
+        a.counted = true;
+        a.job.future = begin(() -> a.check(subjectId))
+                .thenApplyAsync(x -> a.captureLocated(captures), executor)
+                .thenApplyAsync(x -> a.detect(null), executor)
+                .thenApplyAsync(x -> a.verify(), executor)
+                .thenApplyAsync(x -> a.record(subjectId, lastAttempt), executor);
+        return a.job;
+    }
+
+    // Records a frame that was already verified (speculatively, before the click): only the
+    // attendance check and write remain
+    public Job record(User user, long subjectId, BufferedImage image, VerificationResult verification,
+                      Consumer<Stage> progress) {
+        Attempt a = new Attempt(new Job(), progress);
+        a.user = user;
+        a.image = image;
+        a.verification = verification;
+        a.outcome = Outcome.PRESENT;
+        a.counted = true;
+        a.job.future = begin(() -> a.check(subjectId))
+                .thenApplyAsync(x -> a.countAttempt(), executor)
+                .thenApplyAsync(x -> a.record(subjectId, false), executor);
+        return a.job;
+    }
+
+    // Walk-up check-in: identifies whoever is in front of the camera among all enrolled users
+    public Job identify(long subjectId, Supplier<BufferedImage> frames, Consumer<Stage> progress) {
+        return identify(subjectId, frames, null, progress);
+    }
+
+    // Walk-up check-in where admit decides, once the user is known, whether to record them at all;
+    // a rejected user completes as SUPPRESSED without touching the database
+    public Job identify(long subjectId, Supplier<BufferedImage> frames, Predicate<User> admit, Consumer<Stage> progress) {
+        return identifyCapture(subjectId, () -> {
+            BufferedImage image = frames.get();
+            return image != null ? new Capture(image, null) : null;
+        }, admit, progress);
+    }
+
+    // Walk-up check-in of a capture whose face is usually already located (a kiosk's tracker), so the
+    // gallery search crops it instead of detecting again on the full frame
+    public Job identifyCapture(long subjectId, Supplier<Capture> captures, Predicate<User> admit, Consumer<Stage> progress) {
+        Attempt a = new Attempt(new Job(), progress);
+        a.job.future = begin(() -> a.captureLocated(captures))
+                .thenApplyAsync(x -> a.identify(admit), executor)
+                .thenApplyAsync(x -> a.record(subjectId, false), executor);
+        return a.job;
+    }
+
+    // First stage of an attempt; a full pool fails the returned future instead of throwing at the caller
+    private CompletableFuture<Result> begin(Supplier<Result> stage) {
+        try {
+            return CompletableFuture.supplyAsync(stage, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // State of one attempt; a stage that settles the outcome sets result and later stages pass it through
+    private final class Attempt {
+        final Job job;
+        final Consumer<Stage> progress;
+        User user;
+        BufferedImage image;
+        Rectangle face;
+        VerificationResult verification;
+        Outcome outcome;
+        Result result;
+        // 1:1 attempts feed the retry-rate metric once they get past the attendance check
+        boolean counted;
+
+        Attempt(Job job, Consumer<Stage> progress) {
+            this.job = job;
+            this.progress = progress;
+        }
+
+        Result check(long subjectId) {
+            enter(Stage.CHECKING);
+            if (attendanceService.hasAttendanceToday(user.getId(), subjectId)) {
+                result = new Result(Outcome.ALREADY_MARKED, user, null, null);
+            }
+            return result;
+        }
+
+        Result capture(Supplier<BufferedImage> frames) {
+            if (result != null) return result;
+            enter(Stage.CAPTURING);
+            countAttempt();
+            image = frames.get();
+            if (image == null) result = new Result(Outcome.NO_FRAME, user, null, null);
+            return result;
+        }
+
+        Result captureLocated(Supplier<Capture> captures) {
+            if (result != null) return result;
+            enter(Stage.CAPTURING);
+            countAttempt();
+            Capture c = captures.get();
+            image = c != null ? c.image() : null;
+            face = c != null ? c.face() : null;
+            if (image == null) result = new Result(Outcome.NO_FRAME, user, null, null);
+            return result;
+        }
+
+        Result detect(FaceTracker tracker) {
+            if (result != null) return result;
+            enter(Stage.DETECTING);
+            // The tracked rectangle doubles as the verification crop; a capture that brought its own skips detection
+            if (face == null) face = (tracker != null ? tracker : faceService.newTracker()).update(image);
+            if (face == null) outcome = Outcome.NO_FACE;
+            return result;
+        }
+
+        Result verify() {
+            if (result != null || outcome != null) return result;
+            enter(Stage.VERIFYING);
+            try (PointerScope scope = new PointerScope()) {
+                verification = faceService.verify(user, CameraUtil.bufferedImageToMat(image), face);
+            }
+            outcome = verification.isAccepted() ? Outcome.PRESENT : Outcome.NOT_VERIFIED;
+            return result;
+        }
+
+        Result identify(Predicate<User> admit) {
+            if (result != null) return result;
+            enter(Stage.IDENTIFYING);
+            IdentificationResult id = faceGallery.identify(image, face);
+            System.out.println("Walk-up identification: " + id);
+            if (id.isIdentified() && admit != null && !admit.test(id.getUser())) {
+                result = new Result(Outcome.SUPPRESSED, id.getUser(), null, id.getVerification());
+            } else if (id.isIdentified()) {
+                user = id.getUser();
+                verification = id.getVerification();
+                outcome = Outcome.PRESENT;
+            } else {
+                result = new Result(Outcome.NOT_IDENTIFIED, null, null, null);
+            }
+            return result;
+        }
+
+        Result record(long subjectId, boolean lastAttempt) {
+            if (result != null) return result;
+            boolean present = outcome == Outcome.PRESENT;
+            if (!present && !lastAttempt) return new Result(outcome, user, null, verification);
+            enter(Stage.RECORDING);
+            // The row references the photo's path, but the file is written (in the background) only once the
+            // row exists, so a rejected or failed insert leaves no orphan photo behind
+            Path photoPath = photoDir != null ? CameraUtil.newPhotoPath(photoDir, "capture-") : null;
+            String photo = photoPath != null ? photoPath.toString() : null;
+            try {
+                if (present) attendanceService.markPresentWithCheck(user.getId(), subjectId, "CAMERA", photo);
+                else attendanceService.markAbsentWithCheck(user.getId(), subjectId, "CAMERA", photo);
+            } catch (AttendanceService.AlreadyMarkedException e) {
+                return new Result(Outcome.ALREADY_MARKED, user, null, verification);
+            }
+            if (photoPath != null) CameraUtil.writeJpegAsync(image, photoPath);
+            if (counted && present) Metrics.increment("checkin.present");
+            return new Result(present ? Outcome.PRESENT : Outcome.ABSENT, user, photo, verification);
+        }
+
+        // Precaptured frames (speculative verification) skip capture() but are still an attempt
+        Result countAttempt() {
+            if (result == null && counted) Metrics.increment("checkin.attempts");
+            return result;
+        }
+
+        private void enter(Stage stage) {
+            if (job.cancelled) throw new CancellationException("check-in cancelled before " + stage);
+            if (progress != null) progress.accept(stage);
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.ams.dao.SubjectDao;
 import com.ams.model.AttendanceRecord;
 import com.ams.model.User;
 import com.ams.model.Subject;
+import com.ams.util.AttendanceClock;
 
 import javax.swing.*;
 import java.io.FileWriter;
@@ -88,7 +89,7 @@ public class ExportService {
     }
     
     public boolean exportTodaysAttendanceToCSV(String filePath) {
-        return exportAttendanceToCSV(LocalDate.now(), filePath);
+        return exportAttendanceToCSV(AttendanceClock.today(), filePath);
     }
     
     private String escapeCSV(String value) {
@@ -0,0 +1,105 @@
+package com.ams.service;
+
+import com.ams.config.Config;
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.bytedeco.opencv.opencv_core.RectVector;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.bytedeco.opencv.opencv_objdetect.CascadeClassifier;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+// Haar cascade detection with tunable parameters. When a detection width is set, the cascade runs
+// on a copy downscaled to that width (INTER_AREA) and rectangles are mapped back to full resolution:
+// halving the width cuts the number of windows scanned roughly fourfold. Faces smaller than the
+// cascade window (20x20 for frontalface_alt) at the reduced scale can no longer be found, so
+// minSize should stay above 20 * (frame width / detection width).
+public class FaceDetector {
+
+    // detectWidth <= 0 detects at full resolution; minSize/maxSize are full-resolution pixels, maxSize <= 0 is unbounded
+    public record Params(int detectWidth, double scaleFactor, int minNeighbors, int minSize, int maxSize) {
+
+        // Reads <prefix>.width, .scaleFactor, .minNeighbors, .minSize and .maxSize, falling back to defaults
+        public static Params fromConfig(String prefix, Params defaults) {
+            return new Params(
+                    Integer.parseInt(Config.get(prefix + ".width", String.valueOf(defaults.detectWidth))),
+                    Double.parseDouble(Config.get(prefix + ".scaleFactor", String.valueOf(defaults.scaleFactor))),
+                    Integer.parseInt(Config.get(prefix + ".minNeighbors", String.valueOf(defaults.minNeighbors))),
+                    Integer.parseInt(Config.get(prefix + ".minSize", String.valueOf(defaults.minSize))),
+                    Integer.parseInt(Config.get(prefix + ".maxSize", String.valueOf(defaults.maxSize))));
+        }
+
+        public Params withDetectWidth(int width) {
+            return new Params(width, scaleFactor, minNeighbors, minSize, maxSize);
+        }
+    }
+
+    // Registered photos: exhaustive full-resolution search tuned for small passport-style faces
+    public static final Params REFERENCE = new Params(0, 1.05, 2, 30, 0);
+    // Presence check on live frames
+    public static final Params PRESENCE = new Params(320, 1.1, 3, 40, 0);
+
+    private final FaceModelRegistry models;
+    private final Params params;
+
+    public FaceDetector(FaceModelRegistry models, Params params) {
+        this.models = models;
+        this.params = params;
+    }
+
+    public Params getParams() { return params; }
+
+    // Faces in a grayscale image, in full-resolution coordinates; empty when no cascade is available
+    public List<Rectangle> detect(Mat gray) {
+        return detect(gray, params);
+    }
+
+    // Same with one-off parameters, e.g. size bounds around a tracked face
+    public List<Rectangle> detect(Mat gray, Params params) {
+        List<Rectangle> out = new ArrayList<>();
+        if (gray == null || gray.empty() || !models.hasCascade()) return out;
+        try (PointerScope scope = new PointerScope()) {
+            Mat input = gray;
+            double scale = 1.0;
+            if (params.detectWidth > 0 && gray.cols() > params.detectWidth) {
+                scale = (double) params.detectWidth / gray.cols();
+                input = new Mat();
+                opencv_imgproc.resize(gray, input, new Size(params.detectWidth, (int) Math.round(gray.rows() * scale)),
+                        0, 0, opencv_imgproc.INTER_AREA);
+            }
+            int min = (int) Math.round(params.minSize * scale);
+            int max = params.maxSize > 0 ? (int) Math.round(params.maxSize * scale) : 0;
+            RectVector faces = new RectVector();
+            try (FaceModelRegistry.Lease<CascadeClassifier> cascade = models.borrowCascade()) {
+                cascade.get().detectMultiScale(input, faces, params.scaleFactor, params.minNeighbors, 0,
+                        new Size(min, min), new Size(max, max));
+            }
+            for (long i = 0; i < faces.size(); i++) {
+                Rect r = faces.get(i);
+                int x = (int) Math.round(r.x() / scale);
+                int y = (int) Math.round(r.y() / scale);
+                int w = Math.min(gray.cols() - x, (int) Math.round(r.width() / scale));
+                int h = Math.min(gray.rows() - y, (int) Math.round(r.height() / scale));
+                out.add(new Rectangle(x, y, w, h));
+            }
+        }
+        return out;
+    }
+
+    // Largest detected face or null
+    public Rectangle detectLargest(Mat gray) {
+        return detectLargest(gray, params);
+    }
+
+    public Rectangle detectLargest(Mat gray, Params params) {
+        Rectangle best = null;
+        for (Rectangle r : detect(gray, params)) {
+            if (best == null || (long) r.width * r.height > (long) best.width * best.height) best = r;
+        }
+        return best;
+    }
+}
@@ -0,0 +1,299 @@
+package com.ams.service;
+
+import com.ams.config.Config;
+import com.ams.dao.UserDao;
+import com.ams.model.FaceTemplateRecord;
+import com.ams.model.User;
+import com.ams.util.CameraUtil;
+import com.ams.util.Metrics;
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// In-memory gallery of every enrolled user's precomputed face template for 1:N identification.
+// A search ranks the whole gallery with cheap pure-Java correlations (32x32 coarse, then the
+// full 128x128 face, which equals TM_CCOEFF_NORMED for same-size images) and only runs the
+// regular verification rules on a short list, so thousands of users cost tens of milliseconds.
+public class FaceGallery {
+    private static final int FACE_SIZE = 128;
+    private static final int COARSE_SIZE = 32;
+    private static final int SHORTLIST = Integer.parseInt(Config.get("face.gallery.shortlist", "5"));
+    // 1:N is stricter than 1:1: the best of N impostors scores higher as the gallery grows, so a match
+    // must clear a raised template score and beat the runner-up (another user) by a clear margin
+    private static final double MIN_TEMPLATE_SCORE = Double.parseDouble(Config.get("face.gallery.minTemplateScore", "0.68"));
+    private static final double MIN_MARGIN = Double.parseDouble(Config.get("face.gallery.minMargin", "0.05"));
+    // Candidates below this full-resolution correlation cannot pass the template thresholds;
+    // the small margin absorbs float vs. OpenCV rounding differences
+    private static final double MIN_CANDIDATE_SCORE = Math.max(0.58, MIN_TEMPLATE_SCORE - 0.02);
+
+    // User ids whose photo changed or who were removed; applied lazily before the next search
+    private static final Set<Long> PENDING = ConcurrentHashMap.newKeySet();
+    // Set when users were deleted in bulk; the next search rebuilds the whole gallery
+    private static volatile boolean reloadPending;
+
+    static {
+        UserDao.addChangeListener(new UserDao.ChangeListener() {
+            @Override
+            public void userChanged(long userId, String photoPath) { invalidate(userId); }
+
+            @Override
+            public void usersDeleted() { reloadPending = true; }
+        });
+    }
+
+    private static final class Holder {
+        static final FaceGallery SHARED = new FaceGallery(new FaceService(), new UserDao());
+    }
+
+    private static final class Entry {
+        final User user;
+        final FaceTemplate template;
+        final float[] coarse;
+        final float[] fine;
+
+        Entry(User user, FaceTemplate template, float[] coarse, float[] fine) {
+            this.user = user;
+            this.template = template;
+            this.coarse = coarse;
+            this.fine = fine;
+        }
+    }
+
+    private final FaceService faceService;
+    private final UserDao userDao;
+    // Searches hold the read lock; swapping entries and releasing their native templates takes the write lock
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile List<Entry> entries = List.of();
+    private volatile boolean loaded = false;
+
+    public FaceGallery(FaceService faceService, UserDao userDao) {
+        this.faceService = faceService;
+        this.userDao = userDao;
+        Metrics.gauge("face.gallery.size", () -> entries.size());
+    }
+
+    public static FaceGallery shared() { return Holder.SHARED; }
+
+    // Marks a user's gallery entry as stale (photo changed, user deleted); UserDao changes call this automatically
+    public static void invalidate(long userId) {
+        PENDING.add(userId);
+    }
+
+    public int size() { return entries.size(); }
+
+    public boolean isLoaded() { return loaded; }
+
+    // Rebuilds the gallery from every user with a registered photo: persisted templates are fetched in one
+    // query, and only users without an up-to-date stored template have their photo processed (in parallel)
+    public synchronized void reload() throws SQLException {
+        List<User> users = userDao.listAll();
+        PENDING.clear();
+        long start = System.nanoTime();
+        Map<Long, FaceTemplateRecord> stored = FaceTemplateStore.shared().loadAll();
+        List<Entry> built = users.parallelStream()
+                .map(u -> buildEntry(u, stored.get(u.getId())))
+                .filter(Objects::nonNull)
+                .toList();
+        swap(new ArrayList<>(built), null);
+        loaded = true;
+        System.out.println("Face gallery loaded: " + built.size() + "/" + users.size() + " users in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    public IdentificationResult identify(BufferedImage image) {
+        return identify(image, null);
+    }
+
+    // face, when known (e.g. from a tracker), is cropped directly instead of running detection on the frame
+    public IdentificationResult identify(BufferedImage image, Rectangle face) {
+        if (image == null) return new IdentificationResult(null, Double.NaN, null, size(), 0, 0);
+        try (PointerScope scope = new PointerScope()) {
+            return identify(CameraUtil.bufferedImageToMat(image), face);
+        }
+    }
+
+    public IdentificationResult identify(Mat frame) {
+        return identify(frame, null);
+    }
+
+    // Returns the best enrolled user that passes verification for the face in the frame
+    public IdentificationResult identify(Mat frame, Rectangle faceHint) {
+        long start = System.nanoTime();
+        Metrics.increment("face.identifications");
+        try {
+            ensureLoaded();
+            applyPending();
+        } catch (SQLException e) {
+            System.err.println("Failed to load face gallery: " + e.getMessage());
+        }
+
+        lock.readLock().lock();
+        try (PointerScope scope = new PointerScope()) {
+            List<Entry> snapshot = entries;
+            Mat face = faceService.extractNormalizedFace(frame, faceHint);
+            if (face == null || face.rows() != FACE_SIZE || face.cols() != FACE_SIZE || snapshot.isEmpty()) {
+                return new IdentificationResult(null, Double.NaN, null, snapshot.size(), 0, System.nanoTime() - start);
+            }
+            float[] fine = fineVector(face);
+            float[] coarse = coarseVector(fine);
+
+            // Stage 1: coarse ranking of the whole gallery
+            int widened = Math.min(snapshot.size(), SHORTLIST * 4);
+            PriorityQueue<double[]> top = new PriorityQueue<>(Comparator.comparingDouble(c -> c[0]));
+            for (int i = 0; i < snapshot.size(); i++) {
+                double score = dot(coarse, snapshot.get(i).coarse);
+                if (top.size() < widened) {
+                    top.add(new double[]{score, i});
+                } else if (score > top.peek()[0]) {
+                    top.poll();
+                    top.add(new double[]{score, i});
+                }
+            }
+
+            // Stage 2: exact correlation on the widened list
+            List<double[]> candidates = new ArrayList<>(top.size());
+            for (double[] c : top) {
+                Entry e = snapshot.get((int) c[1]);
+                candidates.add(new double[]{dot(fine, e.fine), c[1]});
+            }
+            candidates.sort((a, b) -> Double.compare(b[0], a[0]));
+            double bestScore = candidates.isEmpty() ? Double.NaN : candidates.get(0)[0];
+
+            // Stage 3: full verification rules, best candidate first
+            int verified = 0;
+            for (double[] c : candidates) {
+                if (verified >= SHORTLIST || c[0] < MIN_CANDIDATE_SCORE) break;
+                Entry e = snapshot.get((int) c[1]);
+                VerificationResult result = faceService.verifyAgainst(e.template, face);
+                verified++;
+                if (result.isAccepted()) {
+                    if (!(result.getTemplateScore() > MIN_TEMPLATE_SCORE) || c[0] - runnerUp(candidates, c) < MIN_MARGIN) {
+                        // Passes 1:1 but is not clearly this user rather than a look-alike; lower-ranked
+                        // candidates can only be closer to the best one, so stop here
+                        Metrics.increment("face.identifications.ambiguous");
+                        break;
+                    }
+                    Metrics.increment("face.identifications.matched");
+                    return new IdentificationResult(e.user, result.getTemplateScore(), result,
+                            snapshot.size(), verified, System.nanoTime() - start);
+                }
+            }
+            return new IdentificationResult(null, bestScore, null, snapshot.size(), verified, System.nanoTime() - start);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Best exact score among the other candidates; 0 when the gallery offered only one
+    private static double runnerUp(List<double[]> candidates, double[] chosen) {
+        for (double[] c : candidates) {
+            if (c != chosen) return c[0];
+        }
+        return 0;
+    }
+
+    private synchronized void ensureLoaded() throws SQLException {
+        if (reloadPending) {
+            reloadPending = false;
+            loaded = false;
+        }
+        if (!loaded) reload();
+    }
+
+    private void applyPending() throws SQLException {
+        if (PENDING.isEmpty()) return;
+        List<Long> ids = new ArrayList<>(PENDING);
+        PENDING.removeAll(ids);
+        List<Entry> replacements = new ArrayList<>();
+        for (long id : ids) {
+            User u = userDao.findById(id);
+            Entry e = u != null ? buildEntry(u, null) : null;
+            if (e != null) replacements.add(e);
+        }
+        swap(replacements, Set.copyOf(ids));
+    }
+
+    // Replaces the entries of the given user ids (or everything when ids is null) and frees the old templates
+    private void swap(List<Entry> replacements, Set<Long> ids) {
+        List<Entry> released = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            List<Entry> next = new ArrayList<>(replacements);
+            for (Entry e : entries) {
+                if (ids != null && !ids.contains(e.user.getId())) next.add(e);
+                else released.add(e);
+            }
+            entries = List.copyOf(next);
+            released.forEach(e -> e.template.release());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Entry buildEntry(User user, FaceTemplateRecord stored) {
+        FaceTemplate template = faceService.referenceTemplate(user, stored);
+        if (template == null) return null;
+        Mat face = template.getFace();
+        if (face.rows() != FACE_SIZE || face.cols() != FACE_SIZE) {
+            template.release();
+            return null;
+        }
+        float[] fine = fineVector(face);
+        return new Entry(user, template, coarseVector(fine), fine);
+    }
+
+    // Zero-mean, unit-norm pixel vector: the dot product of two such vectors is their TM_CCOEFF_NORMED score
+    private static float[] fineVector(Mat face) {
+        byte[] pixels = new byte[FACE_SIZE * FACE_SIZE];
+        face.data().get(pixels);
+        float[] v = new float[pixels.length];
+        for (int i = 0; i < pixels.length; i++) v[i] = pixels[i] & 0xFF;
+        return normalize(v);
+    }
+
+    // 4x4 block average of the (already normalized) fine vector, renormalized
+    private static float[] coarseVector(float[] fine) {
+        int block = FACE_SIZE / COARSE_SIZE;
+        float[] v = new float[COARSE_SIZE * COARSE_SIZE];
+        for (int y = 0; y < FACE_SIZE; y++) {
+            int row = (y / block) * COARSE_SIZE;
+            for (int x = 0; x < FACE_SIZE; x++) {
+                v[row + x / block] += fine[y * FACE_SIZE + x];
+            }
+        }
+        return normalize(v);
+    }
+
+    private static float[] normalize(float[] v) {
+        double mean = 0;
+        for (float f : v) mean += f;
+        mean /= v.length;
+        double norm = 0;
+        for (int i = 0; i < v.length; i++) {
+            v[i] -= (float) mean;
+            norm += (double) v[i] * v[i];
+        }
+        if (norm == 0) return v;
+        float inv = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < v.length; i++) v[i] *= inv;
+        return v;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) sum += a[i] * b[i];
+        return sum;
+    }
+}
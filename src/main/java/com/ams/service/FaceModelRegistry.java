@@ -0,0 +1,142 @@
+package com.ams.service;
+
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.opencv_features2d.BFMatcher;
+import org.bytedeco.opencv.opencv_features2d.ORB;
+import org.bytedeco.opencv.opencv_objdetect.CascadeClassifier;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Process-wide owner of the OpenCV face models. The Haar cascade is extracted from the
+// classpath once; classifier, ORB and matcher instances are not thread-safe, so each caller
+// borrows one from a pool and returns it when done. Pools grow on demand and keep at most
+// one idle instance per core, so concurrent verifications never share detector state.
+public class FaceModelRegistry {
+    private static final String FACE_CASCADE_PATH = "/haarcascade_frontalface_alt.xml";
+    private static final FaceModelRegistry INSTANCE = new FaceModelRegistry();
+
+    private final Path cascadeFile;
+    private final Pool<CascadeClassifier> cascades;
+    private final Pool<ORB> orbs;
+    private final Pool<BFMatcher> matchers;
+    // The probe instance built while validating the cascade file seeds the pool instead of being discarded
+    private CascadeClassifier seedCascade;
+
+    private FaceModelRegistry() {
+        int maxIdle = Runtime.getRuntime().availableProcessors();
+        this.cascadeFile = extractCascade();
+        this.cascades = new Pool<>(this::newCascade, maxIdle);
+        this.orbs = new Pool<>(() -> ORB.create(500, 1.2f, 8, 31, 0, 2, ORB.HARRIS_SCORE, 31, 20), maxIdle);
+        this.matchers = new Pool<>(() -> new BFMatcher(opencv_core.NORM_HAMMING, true), maxIdle);
+    }
+
+    public static FaceModelRegistry get() { return INSTANCE; }
+
+    public boolean hasCascade() { return cascadeFile != null; }
+
+    // Null when no usable cascade is available; callers fall back to alternative detection
+    public Lease<CascadeClassifier> borrowCascade() {
+        return cascadeFile != null ? cascades.borrow() : null;
+    }
+
+    public Lease<ORB> borrowOrb() { return orbs.borrow(); }
+
+    public Lease<BFMatcher> borrowMatcher() { return matchers.borrow(); }
+
+    // Total classifier instances ever built, useful to confirm the pool is bounded by concurrency
+    public int getCascadeInstances() { return cascades.created.get(); }
+
+    private Path extractCascade() {
+        try (InputStream cascadeStream = FaceModelRegistry.class.getResourceAsStream(FACE_CASCADE_PATH)) {
+            if (cascadeStream == null) {
+                System.err.println("Warning: Could not find cascade file in resources, using alternative detection");
+                return null;
+            }
+            Path tempFile = Files.createTempFile("cascade", ".xml");
+            Files.copy(cascadeStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            tempFile.toFile().deleteOnExit();
+
+            CascadeClassifier probe = new CascadeClassifier(tempFile.toString());
+            if (probe.empty()) {
+                probe.close();
+                System.err.println("Warning: Loaded cascade is empty, using alternative detection");
+                return null;
+            }
+            seedCascade = probe;
+            return tempFile;
+        } catch (Exception e) {
+            System.err.println("Warning: Could not initialize face cascade classifier: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private CascadeClassifier newCascade() {
+        CascadeClassifier seeded = seedCascade;
+        if (seeded != null) {
+            seedCascade = null;
+            return seeded;
+        }
+        return new CascadeClassifier(cascadeFile.toString());
+    }
+
+    // Borrowed model instance; closing it hands the instance back to its pool
+    public static final class Lease<T> implements AutoCloseable {
+        private final Pool<T> pool;
+        private final T value;
+
+        private Lease(Pool<T> pool, T value) {
+            this.pool = pool;
+            this.value = value;
+        }
+
+        public T get() { return value; }
+
+        @Override
+        public void close() { pool.release(value); }
+    }
+
+    private static final class Pool<T> {
+        private final ConcurrentLinkedDeque<T> idle = new ConcurrentLinkedDeque<>();
+        private final Supplier<T> factory;
+        private final int maxIdle;
+        private final AtomicInteger idleCount = new AtomicInteger();
+        private final AtomicInteger created = new AtomicInteger();
+
+        Pool(Supplier<T> factory, int maxIdle) {
+            this.factory = factory;
+            this.maxIdle = maxIdle;
+        }
+
+        Lease<T> borrow() {
+            T value = idle.pollFirst();
+            if (value != null) {
+                idleCount.decrementAndGet();
+            } else {
+                synchronized (this) {
+                    value = factory.get();
+                }
+                // Pooled instances are owned by the pool; never let a caller's PointerScope free them
+                if (value instanceof Pointer p) p.retainReference();
+                created.incrementAndGet();
+            }
+            return new Lease<>(this, value);
+        }
+
+        void release(T value) {
+            if (idleCount.incrementAndGet() <= maxIdle) {
+                idle.offerFirst(value);
+            } else {
+                // Surplus instance: drop the pool's reference so its native memory is freed now, not at GC
+                idleCount.decrementAndGet();
+                if (value instanceof Pointer p) p.releaseReference();
+            }
+        }
+    }
+}
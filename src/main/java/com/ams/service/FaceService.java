@@ -1,5 +1,11 @@
 package com.ams.service;
 
+import com.ams.config.Config;
+import com.ams.model.FaceTemplateRecord;
+import com.ams.model.User;
+import com.ams.util.CameraUtil;
+import com.ams.util.Metrics;
+import org.bytedeco.javacpp.PointerScope;
 import org.bytedeco.opencv.global.opencv_core;
 import org.bytedeco.opencv.global.opencv_features2d;
 import org.bytedeco.opencv.global.opencv_imgcodecs;
@@ -8,170 +14,297 @@ import org.bytedeco.opencv.global.opencv_objdetect;
 import org.bytedeco.opencv.opencv_core.DMatchVector;
 import org.bytedeco.opencv.opencv_core.KeyPointVector;
 import org.bytedeco.opencv.opencv_core.Mat;
-import org.bytedeco.opencv.opencv_core.RectVector;
 import org.bytedeco.opencv.opencv_core.Rect;
 import org.bytedeco.opencv.opencv_features2d.BFMatcher;
 import org.bytedeco.opencv.opencv_features2d.ORB;
-import org.bytedeco.opencv.opencv_objdetect.CascadeClassifier;
 
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
 import javax.imageio.ImageIO;
 import java.io.IOException;
 
 public class FaceService {
-    private static final String FACE_CASCADE_PATH = "/haarcascade_frontalface_alt.xml";
-    private CascadeClassifier faceCascade;
+    // Cascade, ORB and matcher instances are shared process-wide and borrowed per call
+    private final FaceModelRegistry models = FaceModelRegistry.get();
+    private final FaceTemplateCache templateCache = FaceTemplateCache.shared();
+    private final FaceTemplateStore templateStore = FaceTemplateStore.shared();
+    // Registered photos always use the exhaustive full-resolution search (stored templates depend on it);
+    // live captures (face.extract.*) and presence checks (face.detect.*) are tunable and may run downscaled
+    private final FaceDetector referenceDetector = new FaceDetector(models, FaceDetector.REFERENCE);
+    private final FaceDetector captureDetector = new FaceDetector(models,
+            FaceDetector.Params.fromConfig("face.extract", FaceDetector.REFERENCE));
+    private final FaceDetector presenceDetector = new FaceDetector(models,
+            FaceDetector.Params.fromConfig("face.detect", FaceDetector.PRESENCE));
+
+    // Decision thresholds; tuned for high security, see STRICT_BIOMETRIC_SECURITY.md
+    private static final double SECURITY_THRESHOLD = 0.60;
+    private static final double STRONG_TEMPLATE_THRESHOLD = 0.65;
+    private static final double ALTERNATIVE_THRESHOLD = 0.75;
+    private static final double GOOD_MATCH_DISTANCE = 50.0;
+    private static final int MIN_GOOD_MATCHES = 15;
+    private static final double MAX_AVG_DISTANCE = 55.0;
+    private static final double MIN_GOOD_MATCH_RATIO = 0.35;
+    // "java" uses HammingMatcher, "opencv" the JNI BFMatcher; both produce the same cross-checked matches
+    private static final boolean JAVA_MATCHER = !"opencv".equalsIgnoreCase(Config.get("face.matcher", "java"));
+    private static final boolean FULL_SCORING = Boolean.parseBoolean(Config.get("face.verify.fullScoring", "false"));
+    private static final int TRACK_REDETECT_EVERY = Integer.parseInt(Config.get("face.track.redetectEvery", "10"));
     
-    public FaceService() {
-        try {
-            // Load cascade from resources
-            java.io.InputStream cascadeStream = getClass().getResourceAsStream(FACE_CASCADE_PATH);
-            if (cascadeStream != null) {
-                // Create temporary file from resource
-                java.nio.file.Path tempFile = java.nio.file.Files.createTempFile("cascade", ".xml");
-                java.nio.file.Files.copy(cascadeStream, tempFile, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-                cascadeStream.close();
-                
-                faceCascade = new CascadeClassifier(tempFile.toString());
-                
-                // Clean up temp file
-                tempFile.toFile().deleteOnExit();
-                
-                if (faceCascade.empty()) {
-                    System.err.println("Warning: Loaded cascade is empty, using alternative detection");
-                    faceCascade = null;
-                }
-            } else {
-                System.err.println("Warning: Could not find cascade file in resources, using alternative detection");
-                faceCascade = null;
-            }
-        } catch (Exception e) {
-            System.err.println("Warning: Could not initialize face cascade classifier: " + e.getMessage());
-            faceCascade = null;
+    // Compares two images by extracting only the face regions and comparing facial biometric features
+    public boolean verifyFace(Path referenceImage, Path capturedImage) {
+        try (PointerScope scope = new PointerScope()) {
+            return verify(-1L, referenceImage, opencv_imgcodecs.imread(capturedImage.toString())).isAccepted();
         }
     }
 
-    // Compares two images by extracting only the face regions and comparing facial biometric features
-    public boolean verifyFace(Path referenceImage, Path capturedImage) {
-        try {
-            Mat img1 = opencv_imgcodecs.imread(referenceImage.toString());
-            Mat img2 = opencv_imgcodecs.imread(capturedImage.toString());
-            if (img1 == null || img1.empty() || img2 == null || img2.empty()) {
+    // Verifies a capture against the user's registered photo, reusing the cached reference template
+    public boolean verifyFace(User user, Path capturedImage) {
+        try (PointerScope scope = new PointerScope()) {
+            return verify(user, opencv_imgcodecs.imread(capturedImage.toString())).isAccepted();
+        }
+    }
+
+    // Verifies an in-memory BGR camera frame against the user's registered photo without any file round trip
+    public boolean verifyFace(User user, Mat capturedFrame) {
+        return verify(user, capturedFrame).isAccepted();
+    }
+
+    public boolean verifyFace(User user, BufferedImage capturedImage) {
+        return verifyFace(user, capturedImage, null);
+    }
+
+    // Verifies using a face rectangle already located by a FaceTracker, skipping the capture-side cascade
+    public boolean verifyFace(User user, BufferedImage capturedImage, java.awt.Rectangle face) {
+        if (capturedImage == null) return false;
+        try (PointerScope scope = new PointerScope()) {
+            return verify(user, CameraUtil.bufferedImageToMat(capturedImage), face).isAccepted();
+        }
+    }
+
+    // Scored verification: every metric is computed at most once, cheapest first, stopping as soon as the outcome is known
+    public VerificationResult verify(User user, Mat capturedFrame) {
+        return verify(user, capturedFrame, null);
+    }
+
+    // Same, with the capture's face rectangle (full-frame coordinates) when it is already known; null detects it
+    public VerificationResult verify(User user, Mat capturedFrame, java.awt.Rectangle face) {
+        if (user == null || user.getPhotoPath() == null || user.getPhotoPath().isBlank()) {
+            return new VerificationResult().decide(false, VerificationResult.Stage.INPUT, "user has no registered photo");
+        }
+        return verify(user.getId(), Path.of(user.getPhotoPath()), capturedFrame, face);
+    }
+
+    // Tracker for one preview loop, using the live-frame detection parameters
+    public FaceTracker newTracker() {
+        return new FaceTracker(presenceDetector, TRACK_REDETECT_EVERY);
+    }
+
+    private VerificationResult verify(long userId, Path referenceImage, Mat img2) {
+        return verify(userId, referenceImage, img2, null);
+    }
+
+    private VerificationResult verify(long userId, Path referenceImage, Mat img2, java.awt.Rectangle faceHint) {
+        Metrics.increment("face.verifications");
+        VerificationResult result = new VerificationResult();
+        FaceTemplate reference = null;
+        // Every temporary Mat/vector/pointer allocated below is freed deterministically when the scope closes
+        try (PointerScope scope = new PointerScope()) {
+            // Reference side comes from the template cache; only the capture is processed per call
+            long start = System.nanoTime();
+            reference = templateCache.get(userId, referenceImage, p -> loadTemplate(userId, p, null));
+            result.addTiming("reference", System.nanoTime() - start);
+            if (img2 == null || img2.empty()) {
                 System.out.println("Face verification failed: Could not load images");
-                return false;
+                return result.decide(false, VerificationResult.Stage.INPUT, "could not load images");
             }
 
-            // Extract face regions from both images
-            Mat face1 = extractFaceRegion(img1);
-            Mat face2 = extractFaceRegion(img2);
-            
-            if (face1 == null || face2 == null || face1.empty() || face2.empty()) {
+            // Extract face region from the capture
+            start = System.nanoTime();
+            Mat face2 = faceHint != null ? cropFaceRegion(img2, faceHint) : extractFaceRegion(img2, captureDetector);
+            result.addTiming("extract", System.nanoTime() - start);
+            
+            if (reference == null || face2 == null || face2.empty()) {
+                Mat img1 = opencv_imgcodecs.imread(referenceImage.toString());
+                if (img1 == null || img1.empty()) {
+                    System.out.println("Face verification failed: Could not load images");
+                    return result.decide(false, VerificationResult.Stage.INPUT, "could not load images");
+                }
                 System.out.println("Face verification failed: Could not extract face regions");
                 // If face extraction fails, use alternative comparison with stricter thresholds
-                return verifyFaceAlternative(img1, img2);
+                start = System.nanoTime();
+                double altScore = verifyFaceAlternative(img1, img2);
+                result.addTiming("alternative", System.nanoTime() - start);
+                result.setTemplateScore(altScore);
+                return result.decide(altScore > ALTERNATIVE_THRESHOLD, VerificationResult.Stage.ALTERNATIVE, "whole-image template match");
             }
             
-            // Normalize face regions for consistent lighting
-            Mat normalizedFace1 = normalizeFace(face1);
+            start = System.nanoTime();
             Mat normalizedFace2 = normalizeFace(face2);
-            
-            // Compare facial biometric features using multiple methods
-            boolean templateMatch = compareFacesTemplate(normalizedFace1, normalizedFace2);
-            boolean featureMatch = compareFacesFeatures(normalizedFace1, normalizedFace2);
-            boolean histogramMatch = compareFacesHistogram(normalizedFace1, normalizedFace2);
-            
-            // STRICT VERIFICATION: Prevent any false positives
-            // Only verify if we have STRONG evidence this is the same person
-            boolean result = false;
-            
-            // PRIMARY RULE: Must have both template AND feature match for high security
-            if (templateMatch && featureMatch) {
-                result = true;
-                System.out.println("STRONG MATCH: Both template and features verified - HIGH CONFIDENCE");
-            }
-            // FALLBACK RULE: Allow ONLY if template match is very strong (for passport photos)
-            else if (templateMatch && !featureMatch) {
-                // Get the actual template score for additional verification
-                Mat tempResult = new Mat();
-                opencv_imgproc.matchTemplate(normalizedFace1, normalizedFace2, tempResult, opencv_imgproc.TM_CCOEFF_NORMED);
-                org.bytedeco.opencv.opencv_core.Point minLoc = new org.bytedeco.opencv.opencv_core.Point();
-                org.bytedeco.opencv.opencv_core.Point maxLoc = new org.bytedeco.opencv.opencv_core.Point();
-                double[] minVal = new double[1];
-                double[] maxVal = new double[1];
-                opencv_core.minMaxLoc(tempResult, minVal, maxVal, minLoc, maxLoc, new Mat());
-                double actualScore = maxVal[0];
-                
-                // Only allow if template score is VERY HIGH (indicating strong similarity)
-                if (actualScore > 0.65) {
-                    result = true;
-                    System.out.println("STRONG TEMPLATE MATCH: Score " + String.format("%.4f", actualScore) + " - MEDIUM CONFIDENCE");
-                } else {
-                    result = false;
-                    System.out.println("WEAK TEMPLATE MATCH: Score " + String.format("%.4f", actualScore) + " - REJECTED FOR SECURITY");
-                }
-            }
-            // REJECT: Any other combination is not secure enough
-            else {
-                result = false;
-                System.out.println("INSUFFICIENT MATCH: Rejecting to prevent false positive");
-            }
-            System.out.println("Face verification result: " + result + " (template: " + templateMatch + 
-                             ", features: " + featureMatch + ", histogram: " + histogramMatch + ")");
-            
-            // Additional security check: if result is true, do a cross-validation
-            if (result) {
-                return performSecurityCheck(normalizedFace1, normalizedFace2);
+            result.addTiming("normalize", System.nanoTime() - start);
+
+            evaluate(reference, normalizedFace2, result);
+            if (FULL_SCORING) {
+                // Diagnostics only: histogram correlation never changes the decision
+                start = System.nanoTime();
+                compareFacesHistogram(reference, normalizedFace2, result);
+                result.addTiming("histogram", System.nanoTime() - start);
             }
-            
+            System.out.println("Face verification result: " + result);
             return result;
             
         } catch (Exception e) {
             System.err.println("Error in face verification: " + e.getMessage());
-            return false;
+            return result.decide(false, VerificationResult.Stage.ERROR, String.valueOf(e.getMessage()));
+        } finally {
+            if (reference != null) reference.release();
+        }
+    }
+
+    // STRICT VERIFICATION: accept only with STRONG evidence this is the same person.
+    // Rule: template > 0.55 AND (features OR template > 0.65) AND security check template > 0.60,
+    // ordered cheapest-first so ORB only runs in the 0.60-0.65 band where it decides the outcome.
+    private void evaluate(FaceTemplate reference, Mat normalizedFace2, VerificationResult result) {
+        long start = System.nanoTime();
+        double templateScore = compareFacesTemplate(reference.getFace(), normalizedFace2);
+        result.addTiming("template", System.nanoTime() - start);
+        result.setTemplateScore(templateScore);
+
+        // The security threshold (0.60) subsumes the basic template threshold (0.55)
+        if (!(templateScore > SECURITY_THRESHOLD)) {
+            System.out.println("SECURITY CHECK FAILED - Rejecting verification to prevent false positive");
+            result.decide(false, VerificationResult.Stage.TEMPLATE, "template score below security threshold");
+            return;
+        }
+        // FALLBACK RULE: a very strong template match is accepted whatever ORB says (passport photos)
+        if (templateScore > STRONG_TEMPLATE_THRESHOLD) {
+            System.out.println("STRONG TEMPLATE MATCH: Score " + String.format("%.4f", templateScore) + " - skipping feature matching");
+            result.decide(true, VerificationResult.Stage.TEMPLATE, "strong template match");
+            return;
+        }
+        // PRIMARY RULE: in between, template AND features must both match
+        start = System.nanoTime();
+        boolean featureMatch = compareFacesFeatures(reference, normalizedFace2, result);
+        result.addTiming("features", System.nanoTime() - start);
+        if (featureMatch) {
+            System.out.println("STRONG MATCH: Both template and features verified - HIGH CONFIDENCE");
+            result.decide(true, VerificationResult.Stage.FEATURES, "template and features match");
+        } else {
+            System.out.println("WEAK TEMPLATE MATCH: Score " + String.format("%.4f", templateScore) + " - REJECTED FOR SECURITY");
+            result.decide(false, VerificationResult.Stage.FEATURES, "features do not match");
         }
     }
     
+    // Builds and persists the user's reference template so later sessions load it instead of re-processing the photo
+    public boolean enroll(User user) {
+        FaceTemplate template = referenceTemplate(user);
+        if (template == null) return false;
+        template.release();
+        return true;
+    }
+
+    // Enrolls in the background (models load off the caller's thread) so registration/photo updates stay responsive
+    public static CompletableFuture<Boolean> enrollAsync(User user) {
+        return CompletableFuture.supplyAsync(() -> new FaceService().enroll(user)).exceptionally(e -> {
+            System.err.println("Face template enrollment failed for " + (user != null ? user.getUsername() : null) + ": " + e.getMessage());
+            return false;
+        });
+    }
+
+    // Reference template of the user's registered photo via the shared cache; retained for the caller, who releases it
+    FaceTemplate referenceTemplate(User user) {
+        return referenceTemplate(user, null);
+    }
+
+    // Same, using an already fetched stored record (bulk gallery load) before falling back to the database row
+    FaceTemplate referenceTemplate(User user, FaceTemplateRecord stored) {
+        if (user == null || user.getPhotoPath() == null || user.getPhotoPath().isBlank()) return null;
+        try (PointerScope scope = new PointerScope()) {
+            return templateCache.get(user.getId(), Path.of(user.getPhotoPath()), p -> loadTemplate(user.getId(), p, stored));
+        }
+    }
+
+    // Normalized 128x128 face of a BGR frame (input of 1:N search); null if no face region can be extracted
+    Mat extractNormalizedFace(Mat frame) {
+        return extractNormalizedFace(frame, null);
+    }
+
+    // Same, cropping at an already located face (full-frame coordinates) instead of detecting; null detects it
+    Mat extractNormalizedFace(Mat frame, java.awt.Rectangle faceHint) {
+        if (frame == null || frame.empty()) return null;
+        Mat face = faceHint != null ? cropFaceRegion(frame, faceHint) : extractFaceRegion(frame, captureDetector);
+        if (face == null || face.empty()) return null;
+        return normalizeFace(face);
+    }
+
+    // Applies the verification rules to an already normalized capture against a precomputed reference
+    VerificationResult verifyAgainst(FaceTemplate reference, Mat normalizedFace) {
+        VerificationResult result = new VerificationResult();
+        try {
+            evaluate(reference, normalizedFace, result);
+        } catch (Exception e) {
+            System.err.println("Error in face verification: " + e.getMessage());
+            result.decide(false, VerificationResult.Stage.ERROR, String.valueOf(e.getMessage()));
+        }
+        return result;
+    }
+
+    // Reference template for a registered photo: the persisted one when it still matches the photo,
+    // otherwise built from the image and persisted; null if it cannot be read or has no face region
+    private FaceTemplate loadTemplate(long userId, Path photo, FaceTemplateRecord stored) {
+        if (userId >= 0) {
+            FaceTemplate persisted = null;
+            try {
+                persisted = stored != null && templateStore.isCurrent(stored, photo)
+                        ? FaceTemplateStore.toTemplate(stored)
+                        : templateStore.load(userId, photo);
+            } catch (IOException e) {
+                System.err.println("Could not read photo " + photo + ": " + e.getMessage());
+            }
+            if (persisted != null) {
+                Metrics.increment("face.templates.stored");
+                return persisted;
+            }
+        }
+        Mat img = opencv_imgcodecs.imread(photo.toString());
+        if (img == null || img.empty()) return null;
+        Mat face = extractFaceRegion(img, referenceDetector);
+        if (face == null || face.empty()) return null;
+        // The cache owns one reference, keeping the template alive past the caller's PointerScope
+        FaceTemplate template = buildTemplate(face).retain();
+        Metrics.increment("face.templates.built");
+        if (userId >= 0) {
+            try {
+                templateStore.save(userId, photo, template);
+            } catch (Exception e) {
+                System.err.println("Could not persist face template for user " + userId + ": " + e.getMessage());
+            }
+        }
+        return template;
+    }
+
+    // Normalizes an extracted face and precomputes its ORB features and histogram
+    private FaceTemplate buildTemplate(Mat face) {
+        Mat normalized = normalizeFace(face);
+        KeyPointVector keypoints = new KeyPointVector();
+        Mat descriptors = new Mat();
+        try (FaceModelRegistry.Lease<ORB> orb = models.borrowOrb()) {
+            orb.get().detectAndCompute(normalized, new Mat(), keypoints, descriptors);
+        } catch (Exception e) {
+            System.err.println("Error computing face features: " + e.getMessage());
+        }
+        return new FaceTemplate(normalized, keypoints, descriptors, computeHistogram(normalized));
+    }
+
     // Extract the largest face region from the image
-    private Mat extractFaceRegion(Mat image) {
+    private Mat extractFaceRegion(Mat image, FaceDetector detector) {
         try {
             Mat gray = new Mat();
             opencv_imgproc.cvtColor(image, gray, opencv_imgproc.COLOR_BGR2GRAY);
             
-            if (faceCascade != null && !faceCascade.isNull()) {
-                RectVector faces = new RectVector();
-                // More aggressive detection for small/passport photos
-                faceCascade.detectMultiScale(gray, faces, 1.05, 2, 0, 
-                    new org.bytedeco.opencv.opencv_core.Size(30, 30),  // Smaller minimum size
-                    new org.bytedeco.opencv.opencv_core.Size());
-                
-                if (faces.size() > 0) {
-                    // Find the largest face
-                    Rect largestFace = null;
-                    int maxArea = 0;
-                    
-                    for (long i = 0; i < faces.size(); i++) {
-                        Rect face = faces.get(i);
-                        int area = face.width() * face.height();
-                        if (area > maxArea) {
-                            maxArea = area;
-                            largestFace = face;
-                        }
-                    }
-                    
-                    if (largestFace != null) {
-                        // Expand face region slightly to include more facial features
-                        int padding = Math.max(10, Math.min(largestFace.width(), largestFace.height()) / 10);
-                        int x = Math.max(0, largestFace.x() - padding);
-                        int y = Math.max(0, largestFace.y() - padding);
-                        int width = Math.min(gray.cols() - x, largestFace.width() + 2 * padding);
-                        int height = Math.min(gray.rows() - y, largestFace.height() + 2 * padding);
-                        
-                        Rect expandedFace = new Rect(x, y, width, height);
-                        return new Mat(gray, expandedFace);
-                    }
-                }
+            java.awt.Rectangle largestFace = detector.detectLargest(gray);
+            if (largestFace != null) {
+                return padFace(gray, largestFace);
             }
             
             // If no face detected, return the center portion of the image
@@ -193,6 +326,29 @@ public class FaceService {
         }
     }
     
+    // Grayscale face region of a frame at a rectangle found earlier (e.g. by a FaceTracker)
+    private Mat cropFaceRegion(Mat image, java.awt.Rectangle face) {
+        try {
+            Mat gray = new Mat();
+            opencv_imgproc.cvtColor(image, gray, opencv_imgproc.COLOR_BGR2GRAY);
+            java.awt.Rectangle inside = face.intersection(new java.awt.Rectangle(0, 0, gray.cols(), gray.rows()));
+            return inside.isEmpty() ? extractFaceRegion(image, captureDetector) : padFace(gray, inside);
+        } catch (Exception e) {
+            System.err.println("Error cropping face region: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Expand face region slightly to include more facial features
+    private static Mat padFace(Mat gray, java.awt.Rectangle face) {
+        int padding = Math.max(10, Math.min(face.width, face.height) / 10);
+        int x = Math.max(0, face.x - padding);
+        int y = Math.max(0, face.y - padding);
+        int width = Math.min(gray.cols() - x, face.width + 2 * padding);
+        int height = Math.min(gray.rows() - y, face.height + 2 * padding);
+        return new Mat(gray, new Rect(x, y, width, height));
+    }
+
     // Normalize face for consistent lighting and contrast
     private Mat normalizeFace(Mat face) {
         try {
@@ -219,8 +375,8 @@ public class FaceService {
         }
     }
     
-    // Compare faces using template matching
-    private boolean compareFacesTemplate(Mat face1, Mat face2) {
+    // Template correlation (TM_CCOEFF_NORMED) of two normalized faces; NaN on error so it never passes a threshold
+    private double compareFacesTemplate(Mat face1, Mat face2) {
         try {
             Mat result = new Mat();
             opencv_imgproc.matchTemplate(face1, face2, result, opencv_imgproc.TM_CCOEFF_NORMED);
@@ -234,40 +390,36 @@ public class FaceService {
             
             double matchScore = maxVal[0];
             System.out.println("Template match score: " + String.format("%.4f", matchScore));
-            
-            // Strong threshold to prevent false positives
-            // Only pass if there's strong facial similarity
-            return matchScore > 0.55;  // Increased to 0.55 for high security
+            return matchScore;
             
         } catch (Exception e) {
             System.err.println("Error in template matching: " + e.getMessage());
-            return false;
+            return Double.NaN;
         }
     }
     
-    // Compare faces using feature matching (ORB)
-    private boolean compareFacesFeatures(Mat face1, Mat face2) {
+    // Compare faces using feature matching (ORB); the capture side is only computed when this stage is reached
+    private boolean compareFacesFeatures(FaceTemplate reference, Mat face2, VerificationResult scores) {
         try {
-            ORB orb = ORB.create(500, 1.2f, 8, 31, 0, 2, ORB.HARRIS_SCORE, 31, 20);
-            KeyPointVector kps1 = new KeyPointVector();
             KeyPointVector kps2 = new KeyPointVector();
-            Mat desc1 = new Mat();
             Mat desc2 = new Mat();
+            try (FaceModelRegistry.Lease<ORB> orb = models.borrowOrb()) {
+                orb.get().detectAndCompute(face2, new Mat(), kps2, desc2);
+            }
+            Mat desc1 = reference.getDescriptors();
             
-            orb.detectAndCompute(face1, new Mat(), kps1, desc1);
-            orb.detectAndCompute(face2, new Mat(), kps2, desc2);
-            
-            if (desc1.empty() || desc2.empty() || kps1.size() < 10 || kps2.size() < 10) {
+            if (desc1.empty() || desc2.empty() || reference.getKeypointCount() < 10 || kps2.size() < 10) {
                 System.out.println("Feature matching: Insufficient features detected");
                 return false;
             }
             
-            BFMatcher matcher = new BFMatcher(opencv_core.NORM_HAMMING, true);
-            DMatchVector matches = new DMatchVector();
-            matcher.match(desc1, desc2, matches);
+            float[] distances = JAVA_MATCHER
+                    ? matchDistancesJava(reference, desc2)
+                    : matchDistancesOpenCv(desc1, desc2);
             
-            if (matches.size() < 10) {
-                System.out.println("Feature matching: Too few matches (" + matches.size() + ")");
+            if (distances.length < 10) {
+                System.out.println("Feature matching: Too few matches (" + distances.length + ")");
+                scores.setFeatureScores(0, distances.length, Double.NaN, Double.NaN);
                 return false;
             }
             
@@ -275,24 +427,24 @@ public class FaceService {
             int goodMatches = 0;
             double totalDistance = 0;
             
-            for (long i = 0; i < matches.size(); i++) {
-                double distance = matches.get(i).distance();
+            for (float distance : distances) {
                 totalDistance += distance;
-                if (distance < 50.0) {
+                if (distance < GOOD_MATCH_DISTANCE) {
                     goodMatches++;
                 }
             }
             
-            double avgDistance = totalDistance / matches.size();
-            double goodMatchRatio = (double) goodMatches / matches.size();
+            double avgDistance = totalDistance / distances.length;
+            double goodMatchRatio = (double) goodMatches / distances.length;
+            scores.setFeatureScores(goodMatches, distances.length, goodMatchRatio, avgDistance);
             
-            System.out.println("Feature matching: " + goodMatches + "/" + matches.size() + 
+            System.out.println("Feature matching: " + goodMatches + "/" + distances.length + 
                              " good matches, avg distance: " + String.format("%.2f", avgDistance) + 
                              ", ratio: " + String.format("%.2f", goodMatchRatio));
             
             // STRICT feature matching to prevent false positives
             // Require strong feature correlation to verify identity
-            return goodMatches >= 15 && avgDistance < 55.0 && goodMatchRatio > 0.35;  // Very strict requirements
+            return goodMatches >= MIN_GOOD_MATCHES && avgDistance < MAX_AVG_DISTANCE && goodMatchRatio > MIN_GOOD_MATCH_RATIO;
             
         } catch (Exception e) {
             System.err.println("Error in feature matching: " + e.getMessage());
@@ -300,81 +452,64 @@ public class FaceService {
         }
     }
     
-    // Compare faces using histogram correlation
-    private boolean compareFacesHistogram(Mat face1, Mat face2) {
+    // Cross-checked Hamming match distances via the pure-Java matcher (reference side packed once per template)
+    private float[] matchDistancesJava(FaceTemplate reference, Mat desc2) {
+        HammingMatcher.Matches matches = HammingMatcher.matchCrossChecked(
+                reference.getPackedDescriptors(), HammingMatcher.pack(desc2), HammingMatcher.wordsPerRow(desc2.cols()));
+        float[] distances = new float[matches.size()];
+        for (int i = 0; i < distances.length; i++) distances[i] = matches.distance(i);
+        return distances;
+    }
+
+    private float[] matchDistancesOpenCv(Mat desc1, Mat desc2) {
+        DMatchVector matches = new DMatchVector();
+        try (FaceModelRegistry.Lease<BFMatcher> matcher = models.borrowMatcher()) {
+            matcher.get().match(desc1, desc2, matches);
+        }
+        float[] distances = new float[(int) matches.size()];
+        for (int i = 0; i < distances.length; i++) distances[i] = matches.get(i).distance();
+        return distances;
+    }
+    
+    // Compare faces using histogram correlation (informational, recorded on the result)
+    private void compareFacesHistogram(FaceTemplate reference, Mat face2, VerificationResult scores) {
         try {
-            // Calculate histograms for both faces using proper OpenCV Java binding
-            Mat hist1 = new Mat();
-            Mat hist2 = new Mat();
-            
-            // Create MatVector for the images
-            org.bytedeco.opencv.opencv_core.MatVector images1 = new org.bytedeco.opencv.opencv_core.MatVector(1);
-            org.bytedeco.opencv.opencv_core.MatVector images2 = new org.bytedeco.opencv.opencv_core.MatVector(1);
-            images1.put(0, face1);
-            images2.put(0, face2);
-            
-            // Create proper parameter objects
-            org.bytedeco.javacpp.IntPointer channels = new org.bytedeco.javacpp.IntPointer(0);
-            org.bytedeco.javacpp.IntPointer histSize = new org.bytedeco.javacpp.IntPointer(256);
-            org.bytedeco.javacpp.FloatPointer ranges = new org.bytedeco.javacpp.FloatPointer(0f, 256f);
-            
-            opencv_imgproc.calcHist(images1, channels, new Mat(), hist1, histSize, ranges);
-            opencv_imgproc.calcHist(images2, channels, new Mat(), hist2, histSize, ranges);
-            
-            // Normalize histograms
-            opencv_core.normalize(hist1, hist1, 0, 1, opencv_core.NORM_MINMAX, -1, new Mat());
-            opencv_core.normalize(hist2, hist2, 0, 1, opencv_core.NORM_MINMAX, -1, new Mat());
+            Mat hist1 = reference.getHistogram();
+            Mat hist2 = computeHistogram(face2);
+            if (hist1 == null || hist2 == null) return;
             
             // Calculate correlation
             double correlation = opencv_imgproc.compareHist(hist1, hist2, opencv_imgproc.CV_COMP_CORREL);
-            
+            scores.setHistogramCorrelation(correlation);
             System.out.println("Histogram correlation: " + String.format("%.4f", correlation));
             
-            // Relaxed histogram correlation threshold for passport photos
-            return correlation > 0.5;  // Reduced from 0.7 to 0.5
-            
         } catch (Exception e) {
             System.err.println("Error in histogram comparison: " + e.getMessage());
-            return false;
         }
     }
     
-    // Additional security check to prevent false positives
-    private boolean performSecurityCheck(Mat face1, Mat face2) {
+    // Calculate the normalized 256-bin grayscale histogram of a face
+    private Mat computeHistogram(Mat face) {
         try {
-            // Perform a stricter template matching as final security check
-            Mat result = new Mat();
-            opencv_imgproc.matchTemplate(face1, face2, result, opencv_imgproc.TM_CCOEFF_NORMED);
-            
-            org.bytedeco.opencv.opencv_core.Point minLoc = new org.bytedeco.opencv.opencv_core.Point();
-            org.bytedeco.opencv.opencv_core.Point maxLoc = new org.bytedeco.opencv.opencv_core.Point();
-            double[] minVal = new double[1];
-            double[] maxVal = new double[1];
-            
-            opencv_core.minMaxLoc(result, minVal, maxVal, minLoc, maxLoc, new Mat());
+            Mat hist = new Mat();
+            org.bytedeco.opencv.opencv_core.MatVector images = new org.bytedeco.opencv.opencv_core.MatVector(1);
+            images.put(0, face);
             
-            double securityScore = maxVal[0];
-            System.out.println("Security check score: " + String.format("%.4f", securityScore));
-            
-            // MAXIMUM security threshold - must have very strong correlation
-            boolean securityPass = securityScore > 0.60;
-            
-            if (!securityPass) {
-                System.out.println("SECURITY CHECK FAILED - Rejecting verification to prevent false positive");
-            } else {
-                System.out.println("Security check passed - Verification confirmed");
-            }
-            
-            return securityPass;
+            org.bytedeco.javacpp.IntPointer channels = new org.bytedeco.javacpp.IntPointer(0);
+            org.bytedeco.javacpp.IntPointer histSize = new org.bytedeco.javacpp.IntPointer(256);
+            org.bytedeco.javacpp.FloatPointer ranges = new org.bytedeco.javacpp.FloatPointer(0f, 256f);
             
+            opencv_imgproc.calcHist(images, channels, new Mat(), hist, histSize, ranges);
+            opencv_core.normalize(hist, hist, 0, 1, opencv_core.NORM_MINMAX, -1, new Mat());
+            return hist;
         } catch (Exception e) {
-            System.err.println("Error in security check: " + e.getMessage());
-            return false; // Fail secure
+            System.err.println("Error computing histogram: " + e.getMessage());
+            return null;
         }
     }
     
-    // Alternative face verification method when face extraction fails
-    private boolean verifyFaceAlternative(Mat img1, Mat img2) {
+    // Alternative face verification score when face extraction fails; compared against ALTERNATIVE_THRESHOLD
+    private double verifyFaceAlternative(Mat img1, Mat img2) {
         try {
             System.out.println("Using alternative face verification method");
             
@@ -412,34 +547,41 @@ public class FaceService {
             double matchScore = maxVal[0];
             System.out.println("Alternative verification score: " + String.format("%.4f", matchScore));
             
-            // STRICT threshold for alternative method to prevent false positives
-            return matchScore > 0.75;  // High threshold for security
+            return matchScore;
             
         } catch (Exception e) {
             System.err.println("Error in alternative face verification: " + e.getMessage());
-            return false;
+            return Double.NaN;
         }
     }
     
     // Detects if a face is present in the captured image
     public boolean detectFace(Path capturedImage) {
-        try {
-            Mat img = opencv_imgcodecs.imread(capturedImage.toString());
+        try (PointerScope scope = new PointerScope()) {
+            return detectFace(opencv_imgcodecs.imread(capturedImage.toString()));
+        }
+    }
+
+    public boolean detectFace(BufferedImage image) {
+        if (image == null) return false;
+        try (PointerScope scope = new PointerScope()) {
+            return detectFace(CameraUtil.bufferedImageToMat(image));
+        }
+    }
+
+    // Detects if a face is present in an in-memory BGR frame
+    public boolean detectFace(Mat img) {
+        Metrics.increment("face.detections");
+        try (PointerScope scope = new PointerScope()) {
             if (img == null || img.empty()) return false;
             
             // Convert to grayscale
             Mat gray = new Mat();
             opencv_imgproc.cvtColor(img, gray, opencv_imgproc.COLOR_BGR2GRAY);
             
-            // Enhanced face detection
-            if (faceCascade != null && !faceCascade.isNull()) {
-                RectVector faces = new RectVector();
-                faceCascade.detectMultiScale(gray, faces, 1.1, 3, 0, 
-                    new org.bytedeco.opencv.opencv_core.Size(30, 30), new org.bytedeco.opencv.opencv_core.Size());
-                
-                if (faces.size() > 0) {
-                    return true; // At least one face detected
-                }
+            // Cascade detection, downscaled per face.detect.width
+            if (!presenceDetector.detect(gray).isEmpty()) {
+                return true; // At least one face detected
             }
             
             // Fallback: Use alternative face detection methods
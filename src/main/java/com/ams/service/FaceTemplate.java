@@ -0,0 +1,66 @@
+package com.ams.service;
+
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.opencv.opencv_core.KeyPointVector;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+// Precomputed biometric features of a single face: the normalized 128x128 face,
+// its ORB keypoints/descriptors and its normalized grayscale histogram. Native memory is
+// reference counted: whoever obtains a template from the cache releases it when done.
+public class FaceTemplate {
+    private final Mat face;
+    private final KeyPointVector keypoints;
+    private final Mat descriptors;
+    private final Mat histogram;
+    private final long keypointCount;
+    private volatile long[] packedDescriptors;
+
+    public FaceTemplate(Mat face, KeyPointVector keypoints, Mat descriptors, Mat histogram) {
+        this.face = face;
+        this.keypoints = keypoints;
+        this.descriptors = descriptors;
+        this.histogram = histogram;
+        this.keypointCount = keypoints != null ? keypoints.size() : 0;
+    }
+
+    // Template restored from storage: keypoint positions are not persisted, only their count
+    public FaceTemplate(Mat face, Mat descriptors, Mat histogram, long keypointCount) {
+        this.face = face;
+        this.keypoints = null;
+        this.descriptors = descriptors;
+        this.histogram = histogram;
+        this.keypointCount = keypointCount;
+    }
+
+    public Mat getFace() { return face; }
+    public KeyPointVector getKeypoints() { return keypoints; }
+    public Mat getDescriptors() { return descriptors; }
+    public Mat getHistogram() { return histogram; }
+
+    public long getKeypointCount() { return keypointCount; }
+
+    // Descriptors packed for HammingMatcher; computed once per template on first use
+    public long[] getPackedDescriptors() {
+        long[] packed = packedDescriptors;
+        if (packed == null) {
+            packed = HammingMatcher.pack(descriptors);
+            packedDescriptors = packed;
+        }
+        return packed;
+    }
+
+    // Adds a reference to the native buffers so they outlive the PointerScope they were built in
+    public FaceTemplate retain() {
+        for (Pointer p : pointers()) if (p != null) p.retainReference();
+        return this;
+    }
+
+    // Drops one reference; the native buffers are freed when the last holder releases them
+    public void release() {
+        for (Pointer p : pointers()) if (p != null) p.releaseReference();
+    }
+
+    private Pointer[] pointers() {
+        return new Pointer[]{face, keypoints, descriptors, histogram};
+    }
+}
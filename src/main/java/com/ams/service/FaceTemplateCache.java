@@ -0,0 +1,123 @@
+package com.ams.service;
+
+import com.ams.config.Config;
+import com.ams.dao.UserDao;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+// Bounded LRU cache of reference face templates keyed by user id + photo path + file mtime,
+// so a registered photo is decoded and processed once instead of on every verification
+public class FaceTemplateCache {
+    private static final FaceTemplateCache SHARED =
+            new FaceTemplateCache(Integer.parseInt(Config.get("face.templateCache.size", "256")));
+
+    static {
+        UserDao.addChangeListener(new UserDao.ChangeListener() {
+            @Override
+            public void userChanged(long userId, String photoPath) { SHARED.invalidateIfChanged(userId, photoPath); }
+
+            @Override
+            public void usersDeleted() { SHARED.clear(); }
+        });
+    }
+
+    private record Key(long userId, String photoPath, long modifiedMillis) {}
+
+    private final int capacity;
+    private final LinkedHashMap<Key, FaceTemplate> entries;
+    private long hits;
+    private long misses;
+
+    public FaceTemplateCache(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, FaceTemplate> eldest) {
+                if (size() <= FaceTemplateCache.this.capacity) return false;
+                eldest.getValue().release();
+                return true;
+            }
+        };
+    }
+
+    public static FaceTemplateCache shared() { return SHARED; }
+
+    // Returns the cached template for the photo, building it with the loader on a miss.
+    // A changed mtime produces a new key, so edited photos are never served stale.
+    // The returned template is retained for the caller, who must release() it; the loader
+    // must return a template that already holds one reference (owned by the cache).
+    public FaceTemplate get(long userId, Path photo, Function<Path, FaceTemplate> loader) {
+        Key key;
+        try {
+            key = new Key(userId, photo.toAbsolutePath().normalize().toString(), Files.getLastModifiedTime(photo).toMillis());
+        } catch (IOException e) {
+            return null;
+        }
+        synchronized (this) {
+            FaceTemplate cached = entries.get(key);
+            if (cached != null) {
+                hits++;
+                return cached.retain();
+            }
+            misses++;
+        }
+        // Build outside the lock so concurrent verifications for other users are not serialized
+        FaceTemplate built = loader.apply(photo);
+        if (built == null) return null;
+        synchronized (this) {
+            removeUser(key.userId(), key);
+            FaceTemplate raced = entries.putIfAbsent(key, built);
+            if (raced != null) {
+                built.release();
+                return raced.retain();
+            }
+            return built.retain();
+        }
+    }
+
+    // Drops every template held for the user, e.g. after the registered photo changed
+    public synchronized void invalidate(long userId) {
+        removeUser(userId, null);
+    }
+
+    // Drops the user's templates only if they were built from a different photo than photoPath
+    public synchronized void invalidateIfChanged(long userId, String photoPath) {
+        String current = photoPath == null || photoPath.isBlank() ? null : Path.of(photoPath).toAbsolutePath().normalize().toString();
+        Iterator<Map.Entry<Key, FaceTemplate>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, FaceTemplate> e = it.next();
+            if (e.getKey().userId() == userId && !e.getKey().photoPath().equals(current)) {
+                e.getValue().release();
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.values().forEach(FaceTemplate::release);
+        entries.clear();
+    }
+
+    public synchronized int size() { return entries.size(); }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+
+    private void removeUser(long userId, Key keep) {
+        // Anonymous lookups (user id < 0) are keyed by path only and never evict each other
+        if (userId < 0) return;
+        Iterator<Map.Entry<Key, FaceTemplate>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, FaceTemplate> e = it.next();
+            if (e.getKey().userId() == userId && !e.getKey().equals(keep)) {
+                e.getValue().release();
+                it.remove();
+            }
+        }
+    }
+}
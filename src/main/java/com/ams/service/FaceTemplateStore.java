@@ -0,0 +1,149 @@
+package com.ams.service;
+
+import com.ams.dao.FaceTemplateDao;
+import com.ams.model.FaceTemplateRecord;
+import org.bytedeco.javacpp.indexer.FloatIndexer;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+
+// Converts face templates to and from user_face_templates rows. A stored template is only
+// trusted when its version/algorithm match this build and its hash matches the photo file,
+// so changing the pipeline or replacing a photo transparently falls back to re-processing.
+public class FaceTemplateStore {
+    // Bump when extraction/normalization/ORB parameters change; older rows are then ignored
+    public static final int TEMPLATE_VERSION = 1;
+    public static final String ALGORITHM_ID = "haar-alt/eqhist-gauss3-128/orb500-harris/hist256";
+
+    private static final class Holder {
+        static final FaceTemplateStore SHARED = new FaceTemplateStore(new FaceTemplateDao());
+    }
+
+    private final FaceTemplateDao dao;
+
+    public FaceTemplateStore(FaceTemplateDao dao) {
+        this.dao = dao;
+    }
+
+    public static FaceTemplateStore shared() { return Holder.SHARED; }
+
+    // Persisted template for the user if it was built from exactly this photo; null otherwise.
+    // The returned template holds one reference owned by the caller.
+    public FaceTemplate load(long userId, Path photo) {
+        try {
+            FaceTemplateRecord record = dao.findByUserId(userId);
+            return isCurrent(record, photo) ? toTemplate(record) : null;
+        } catch (SQLException | IOException e) {
+            System.err.println("Could not load stored face template for user " + userId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Every stored template keyed by user id, fetched in a single query
+    public Map<Long, FaceTemplateRecord> loadAll() {
+        Map<Long, FaceTemplateRecord> out = new HashMap<>();
+        try {
+            for (FaceTemplateRecord r : dao.listAll()) out.put(r.getUserId(), r);
+        } catch (SQLException e) {
+            System.err.println("Could not load stored face templates: " + e.getMessage());
+        }
+        return out;
+    }
+
+    public boolean isCurrent(FaceTemplateRecord record, Path photo) throws IOException {
+        return record != null
+                && record.getTemplateVersion() == TEMPLATE_VERSION
+                && ALGORITHM_ID.equals(record.getAlgorithmId())
+                && record.getPhotoHash().equals(hash(photo));
+    }
+
+    public void save(long userId, Path photo, FaceTemplate template) throws SQLException, IOException {
+        dao.save(toRecord(userId, hash(photo), template));
+    }
+
+    public void delete(long userId) throws SQLException {
+        dao.delete(userId);
+    }
+
+    public static String hash(Path photo) throws IOException {
+        try (InputStream in = Files.newInputStream(photo)) {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) > 0) md.update(buf, 0, n);
+            return HexFormat.of().formatHex(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    static FaceTemplateRecord toRecord(long userId, String photoHash, FaceTemplate template) {
+        FaceTemplateRecord r = new FaceTemplateRecord();
+        r.setUserId(userId);
+        r.setTemplateVersion(TEMPLATE_VERSION);
+        r.setAlgorithmId(ALGORITHM_ID);
+        r.setPhotoHash(photoHash);
+
+        Mat face = template.getFace();
+        byte[] faceData = new byte[face.rows() * face.cols()];
+        face.data().get(faceData);
+        r.setFaceData(faceData);
+
+        Mat desc = template.getDescriptors();
+        if (desc != null && !desc.empty()) {
+            byte[] descData = new byte[desc.rows() * desc.cols()];
+            desc.data().get(descData);
+            r.setDescriptors(descData);
+            r.setDescriptorRows(desc.rows());
+            r.setDescriptorCols(desc.cols());
+        }
+        r.setKeypointCount((int) template.getKeypointCount());
+
+        Mat hist = template.getHistogram();
+        if (hist != null && !hist.empty()) {
+            int bins = (int) hist.total();
+            ByteBuffer buf = ByteBuffer.allocate(bins * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            try (FloatIndexer idx = hist.createIndexer()) {
+                for (int i = 0; i < bins; i++) buf.putFloat(idx.get(i));
+            }
+            r.setHistogram(buf.array());
+        }
+        return r;
+    }
+
+    // Rebuilds native Mats from a stored row; the template holds one reference owned by the caller
+    static FaceTemplate toTemplate(FaceTemplateRecord r) {
+        int side = (int) Math.round(Math.sqrt(r.getFaceData().length));
+        Mat face = new Mat(side, side, opencv_core.CV_8UC1);
+        face.data().put(r.getFaceData());
+
+        Mat desc = new Mat();
+        if (r.getDescriptors() != null && r.getDescriptorRows() > 0) {
+            desc = new Mat(r.getDescriptorRows(), r.getDescriptorCols(), opencv_core.CV_8UC1);
+            desc.data().put(r.getDescriptors());
+        }
+
+        Mat hist = null;
+        if (r.getHistogram() != null) {
+            ByteBuffer buf = ByteBuffer.wrap(r.getHistogram()).order(ByteOrder.LITTLE_ENDIAN);
+            int bins = r.getHistogram().length / Float.BYTES;
+            hist = new Mat(bins, 1, opencv_core.CV_32FC1);
+            try (FloatIndexer idx = hist.createIndexer()) {
+                for (int i = 0; i < bins; i++) idx.put(i, buf.getFloat());
+            }
+        }
+        return new FaceTemplate(face, desc, hist, r.getKeypointCount()).retain();
+    }
+}
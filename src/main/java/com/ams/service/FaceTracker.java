@@ -0,0 +1,112 @@
+package com.ams.service;
+
+import com.ams.util.CameraUtil;
+import com.ams.util.Metrics;
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+// Follows one face across preview frames. A full-frame cascade runs only every N frames or when the
+// track is lost or jumps; in between the cascade searches a small window around the last face with
+// scales bounded to its size, which scans a small fraction of the windows a full detection does.
+// Not shared between cameras: create one per preview loop via FaceService.newTracker().
+public class FaceTracker {
+    // Search window grows the last face by this fraction of its size on every side
+    private static final double SEARCH_MARGIN = 0.5;
+    // Accepted size change between consecutive frames
+    private static final double MIN_SCALE = 0.7;
+    private static final double MAX_SCALE = 1.4;
+    // Overlap with the previous position below which the track is re-confirmed by a full detection
+    private static final double MIN_CONFIDENCE = 0.3;
+
+    private final FaceDetector detector;
+    private final int redetectEvery;
+
+    private Rectangle last;
+    private double confidence;
+    private int sinceFullDetection;
+    private long fullDetections;
+    private long trackedFrames;
+
+    public FaceTracker(FaceDetector detector, int redetectEvery) {
+        this.detector = detector;
+        this.redetectEvery = Math.max(1, redetectEvery);
+    }
+
+    public Rectangle update(BufferedImage image) {
+        if (image == null) return null;
+        try (PointerScope scope = new PointerScope()) {
+            return update(CameraUtil.bufferedImageToMat(image));
+        }
+    }
+
+    // Face rectangle in a BGR frame (full-resolution coordinates), or null when no face is present
+    public synchronized Rectangle update(Mat frame) {
+        if (frame == null || frame.empty()) return null;
+        try (PointerScope scope = new PointerScope()) {
+            Mat gray = new Mat();
+            opencv_imgproc.cvtColor(frame, gray, opencv_imgproc.COLOR_BGR2GRAY);
+            if (last == null || sinceFullDetection >= redetectEvery) return fullDetection(gray);
+
+            Rectangle roi = searchWindow(gray);
+            if (roi.isEmpty()) return fullDetection(gray);
+            FaceDetector.Params base = detector.getParams();
+            int size = Math.min(last.width, last.height);
+            FaceDetector.Params bounded = new FaceDetector.Params(0, base.scaleFactor(), base.minNeighbors(),
+                    (int) (size * MIN_SCALE), (int) Math.ceil(size * MAX_SCALE));
+            Rectangle found = detector.detectLargest(new Mat(gray, new Rect(roi.x, roi.y, roi.width, roi.height)), bounded);
+            if (found == null) return fullDetection(gray);
+
+            found.translate(roi.x, roi.y);
+            confidence = iou(last, found);
+            last = found;
+            trackedFrames++;
+            Metrics.increment("face.track.tracked");
+            // A jump means the window may have locked onto something else; confirm on the next frame
+            sinceFullDetection = confidence < MIN_CONFIDENCE ? redetectEvery : sinceFullDetection + 1;
+            return new Rectangle(found);
+        }
+    }
+
+    public synchronized Rectangle getLastFace() { return last != null ? new Rectangle(last) : null; }
+
+    // Overlap (IoU) of the last tracked position with the one before; 1.0 right after a full detection
+    public synchronized double getConfidence() { return confidence; }
+
+    public synchronized long getFullDetections() { return fullDetections; }
+
+    public synchronized long getTrackedFrames() { return trackedFrames; }
+
+    public synchronized void reset() {
+        last = null;
+        confidence = 0;
+        sinceFullDetection = 0;
+    }
+
+    private Rectangle fullDetection(Mat gray) {
+        fullDetections++;
+        Metrics.increment("face.track.full");
+        last = detector.detectLargest(gray);
+        confidence = last != null ? 1.0 : 0.0;
+        sinceFullDetection = 0;
+        return last != null ? new Rectangle(last) : null;
+    }
+
+    private Rectangle searchWindow(Mat gray) {
+        int mx = (int) (last.width * SEARCH_MARGIN);
+        int my = (int) (last.height * SEARCH_MARGIN);
+        Rectangle window = new Rectangle(last.x - mx, last.y - my, last.width + 2 * mx, last.height + 2 * my);
+        return window.intersection(new Rectangle(0, 0, gray.cols(), gray.rows()));
+    }
+
+    private static double iou(Rectangle a, Rectangle b) {
+        Rectangle i = a.intersection(b);
+        if (i.isEmpty()) return 0;
+        double inter = (double) i.width * i.height;
+        return inter / ((double) a.width * a.height + (double) b.width * b.height - inter);
+    }
+}
@@ -0,0 +1,21 @@
+package com.ams.service;
+
+// Sleeps so successive frames are delivered no faster than the target rate; fps <= 0 never waits
+final class FramePacer {
+    private final long intervalNanos;
+    private long next;
+
+    FramePacer(double fps) {
+        this.intervalNanos = fps > 0 ? (long) (1_000_000_000L / fps) : 0;
+    }
+
+    void pace() throws InterruptedException {
+        if (intervalNanos == 0) return;
+        long now = System.nanoTime();
+        if (next == 0) next = now;
+        long wait = next - now;
+        if (wait > 0) Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+        // Falling behind resets the schedule instead of bursting to catch up
+        next = Math.max(next, now) + intervalNanos;
+    }
+}
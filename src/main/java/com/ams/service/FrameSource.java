@@ -0,0 +1,45 @@
+package com.ams.service;
+
+import com.ams.config.Config;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Where frames come from: a live camera or a recorded session (directory of images, video file).
+// CameraService and the headless replay runner read from any source the same way.
+public interface FrameSource extends AutoCloseable {
+
+    // Fills frame with the next BGR frame; false when no frame is available (end of a recording,
+    // or a camera hiccup - callers retry while isLive())
+    boolean read(Mat frame) throws InterruptedException;
+
+    // Live sources never end; recorded sources are finished once read() returns false
+    boolean isLive();
+
+    String describe();
+
+    @Override
+    void close();
+
+    // Source named by a spec: "camera" (default), "images:<dir>" or "video:<file>". Recorded sources
+    // play at camera.source.fps (0 = as fast as possible, -1 = the video's own rate) and loop when
+    // camera.source.loop is true.
+    static FrameSource open(String spec, int cameraIndex) throws IOException {
+        double fps = Double.parseDouble(Config.get("camera.source.fps", "-1"));
+        boolean loop = Boolean.parseBoolean(Config.get("camera.source.loop", "false"));
+        return open(spec, cameraIndex, fps, loop);
+    }
+
+    static FrameSource open(String spec, int cameraIndex, double fps, boolean loop) throws IOException {
+        if (spec == null || spec.isBlank() || spec.equals("camera")) return new CameraFrameSource(cameraIndex);
+        if (spec.startsWith("images:")) return new ImageDirectoryFrameSource(Path.of(spec.substring(7)), Math.max(0, fps), loop);
+        if (spec.startsWith("video:")) return new VideoFileFrameSource(Path.of(spec.substring(6)), fps, loop);
+        throw new IOException("Unknown frame source: " + spec);
+    }
+
+    // Source configured for interactive use: camera.source.<index> when set, otherwise camera.source
+    static FrameSource fromConfig(int cameraIndex) throws IOException {
+        return open(Config.get("camera.source." + cameraIndex, Config.get("camera.source", "camera")), cameraIndex);
+    }
+}
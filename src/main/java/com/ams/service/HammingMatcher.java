@@ -0,0 +1,118 @@
+package com.ams.service;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.util.Arrays;
+
+// Pure-Java brute-force matcher for binary (ORB) descriptors, equivalent to
+// BFMatcher(NORM_HAMMING, crossCheck=true). Descriptors are packed into long[] rows
+// (ORB: 32 bytes = 4 longs) and compared with Long.bitCount, which the JIT compiles to
+// a single POPCNT, avoiding the per-call JNI and DMatchVector overhead of BFMatcher.
+public final class HammingMatcher {
+
+    // Cross-checked matches: pair k links query row queryIdx[k] with train row trainIdx[k]
+    public static final class Matches {
+        private final int[] queryIdx;
+        private final int[] trainIdx;
+        private final int[] distance;
+        private final int size;
+
+        Matches(int[] queryIdx, int[] trainIdx, int[] distance, int size) {
+            this.queryIdx = queryIdx;
+            this.trainIdx = trainIdx;
+            this.distance = distance;
+            this.size = size;
+        }
+
+        public int size() { return size; }
+        public int queryIdx(int k) { return queryIdx[k]; }
+        public int trainIdx(int k) { return trainIdx[k]; }
+        public int distance(int k) { return distance[k]; }
+    }
+
+    private HammingMatcher() {}
+
+    // Packed descriptors of an 8-bit descriptor Mat (one row per keypoint)
+    public static long[] pack(Mat descriptors) {
+        if (descriptors == null || descriptors.empty()) return new long[0];
+        int rows = descriptors.rows();
+        int cols = descriptors.cols();
+        byte[] data = new byte[rows * cols];
+        descriptors.data().get(data);
+        return pack(data, rows, cols);
+    }
+
+    public static long[] pack(byte[] data, int rows, int bytesPerRow) {
+        int words = wordsPerRow(bytesPerRow);
+        long[] packed = new long[rows * words];
+        for (int r = 0; r < rows; r++) {
+            int base = r * bytesPerRow;
+            for (int b = 0; b < bytesPerRow; b++) {
+                packed[r * words + (b >>> 3)] |= (data[base + b] & 0xFFL) << ((b & 7) << 3);
+            }
+        }
+        return packed;
+    }
+
+    public static int wordsPerRow(int bytesPerRow) {
+        return (bytesPerRow + 7) >>> 3;
+    }
+
+    // Mutual nearest neighbours by Hamming distance; ties resolve to the lowest index, like BFMatcher
+    public static Matches matchCrossChecked(long[] query, long[] train, int words) {
+        int n = query.length / words;
+        int m = train.length / words;
+        int[] rowBest = new int[n];
+        int[] rowDist = new int[n];
+        int[] colBest = new int[m];
+        int[] colDist = new int[m];
+        Arrays.fill(rowDist, Integer.MAX_VALUE);
+        Arrays.fill(colDist, Integer.MAX_VALUE);
+
+        // Single pass over the distance matrix keeps both directions' best match without storing it
+        if (words == 4) {
+            for (int i = 0; i < n; i++) {
+                int qi = i << 2;
+                long q0 = query[qi], q1 = query[qi + 1], q2 = query[qi + 2], q3 = query[qi + 3];
+                int best = Integer.MAX_VALUE;
+                int bestJ = -1;
+                for (int j = 0, tj = 0; j < m; j++, tj += 4) {
+                    int d = Long.bitCount(q0 ^ train[tj]) + Long.bitCount(q1 ^ train[tj + 1])
+                            + Long.bitCount(q2 ^ train[tj + 2]) + Long.bitCount(q3 ^ train[tj + 3]);
+                    if (d < best) { best = d; bestJ = j; }
+                    if (d < colDist[j]) { colDist[j] = d; colBest[j] = i; }
+                }
+                rowBest[i] = bestJ;
+                rowDist[i] = best;
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                int best = Integer.MAX_VALUE;
+                int bestJ = -1;
+                for (int j = 0; j < m; j++) {
+                    int d = 0;
+                    for (int w = 0; w < words; w++) d += Long.bitCount(query[i * words + w] ^ train[j * words + w]);
+                    if (d < best) { best = d; bestJ = j; }
+                    if (d < colDist[j]) { colDist[j] = d; colBest[j] = i; }
+                }
+                rowBest[i] = bestJ;
+                rowDist[i] = best;
+            }
+        }
+
+        int[] qIdx = new int[n];
+        int[] tIdx = new int[n];
+        int[] dist = new int[n];
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            int j = rowBest[i];
+            if (j >= 0 && colBest[j] == i) {
+                qIdx[size] = i;
+                tIdx[size] = j;
+                dist[size] = rowDist[i];
+                size++;
+            }
+        }
+        return new Matches(qIdx, tIdx, dist, size);
+    }
+}
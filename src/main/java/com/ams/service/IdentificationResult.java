@@ -0,0 +1,39 @@
+package com.ams.service;
+
+import com.ams.model.User;
+
+// Outcome of a 1:N search: the identified user (null when nobody passed verification),
+// the best coarse-ranked candidate score and how much of the gallery was examined
+public class IdentificationResult {
+    private final User user;
+    private final double score;
+    private final VerificationResult verification;
+    private final int gallerySize;
+    private final int candidatesVerified;
+    private final long elapsedNanos;
+
+    public IdentificationResult(User user, double score, VerificationResult verification,
+                                int gallerySize, int candidatesVerified, long elapsedNanos) {
+        this.user = user;
+        this.score = score;
+        this.verification = verification;
+        this.gallerySize = gallerySize;
+        this.candidatesVerified = candidatesVerified;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public boolean isIdentified() { return user != null; }
+    public User getUser() { return user; }
+    public double getScore() { return score; }
+    public VerificationResult getVerification() { return verification; }
+    public int getGallerySize() { return gallerySize; }
+    public int getCandidatesVerified() { return candidatesVerified; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    @Override
+    public String toString() {
+        return (isIdentified() ? "IDENTIFIED " + user.getUsername() : "NO MATCH")
+                + String.format(" score=%.4f gallery=%d verified=%d in %.1fms",
+                        score, gallerySize, candidatesVerified, elapsedNanos / 1_000_000.0);
+    }
+}
@@ -0,0 +1,58 @@
+package com.ams.service;
+
+import org.bytedeco.opencv.global.opencv_imgcodecs;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Replays the images of a directory in file-name order as frames
+public class ImageDirectoryFrameSource implements FrameSource {
+    private final Path dir;
+    private final List<Path> images;
+    private final boolean loop;
+    private final FramePacer pacer;
+    private int next;
+
+    public ImageDirectoryFrameSource(Path dir, double fps, boolean loop) throws IOException {
+        this.dir = dir;
+        try (Stream<Path> files = Files.list(dir)) {
+            this.images = files.filter(p -> p.getFileName().toString().matches("(?i).*\\.(jpe?g|png|bmp)")).sorted().toList();
+        }
+        if (images.isEmpty()) throw new IOException("No images in " + dir);
+        this.loop = loop;
+        this.pacer = new FramePacer(fps);
+    }
+
+    @Override
+    public boolean read(Mat frame) throws InterruptedException {
+        while (true) {
+            if (next >= images.size()) {
+                if (!loop) return false;
+                next = 0;
+            }
+            Path p = images.get(next++);
+            try (Mat img = opencv_imgcodecs.imread(p.toString())) {
+                if (img == null || img.empty()) {
+                    System.err.println("Skipping unreadable frame " + p);
+                    continue;
+                }
+                pacer.pace();
+                img.copyTo(frame);
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean isLive() { return false; }
+
+    @Override
+    public String describe() { return "images:" + dir + " (" + images.size() + " frames)"; }
+
+    @Override
+    public void close() { }
+}
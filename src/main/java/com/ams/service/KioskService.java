@@ -0,0 +1,217 @@
+package com.ams.service;
+
+import com.ams.config.Config;
+import com.ams.model.User;
+import com.ams.util.CameraUtil;
+import com.ams.util.LatestFrameWorker;
+import com.ams.util.Metrics;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Unattended walk-up check-in for one subject: every detection frame is tracked, and once a face has
+// been steady for a few frames it is identified against the enrolled gallery and marked PRESENT.
+// Each tracked face is identified once (an unrecognised one up to kiosk.identifyAttempts times) until
+// it leaves the frame, and a user checked in within kiosk.cooldownSeconds is not looked up in the
+// database again, so a student lingering in front of the camera neither repeats the work nor slows
+// the line down.
+// Several kiosks can run at once, one per camera: they share the face models and the check-in
+// pipeline's verification pool, and each reports its own throughput and backlog.
+public class KioskService implements AutoCloseable {
+    private static final double FPS = Double.parseDouble(Config.get("kiosk.fps", "10"));
+    private static final int STABLE_FRAMES = Integer.parseInt(Config.get("kiosk.stableFrames", "2"));
+    private static final long COOLDOWN_MILLIS = Long.parseLong(Config.get("kiosk.cooldownSeconds", "30")) * 1000;
+    private static final int IDENTIFY_ATTEMPTS = Math.max(1, Integer.parseInt(Config.get("kiosk.identifyAttempts", "3")));
+
+    // Called on the kiosk worker thread; implementations hand UI updates to the EDT
+    public interface Listener {
+        void onFace(Rectangle face, int frameWidth, int frameHeight);
+
+        void onCheckIn(CheckInPipeline.Result result);
+    }
+
+    private final String name;
+    private final CameraService camera;
+    private final CheckInPipeline pipeline;
+    private final long subjectId;
+    private final Listener listener;
+    private final FaceTracker tracker;
+    // User id -> when the kiosk last checked them in (PRESENT or ALREADY_MARKED)
+    private final Map<Long, Long> lastSeen = new HashMap<>();
+    private final AtomicLong present = new AtomicLong();
+    private final AtomicLong alreadyMarked = new AtomicLong();
+    private final AtomicLong suppressed = new AtomicLong();
+    private final AtomicLong unrecognised = new AtomicLong();
+    // Identifications in flight on the shared pool (0 or 1: the worker waits for each one)
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Smoothed processed-frame rate and identification latency, written by the worker
+    private volatile double fps;
+    private volatile double identifyMillis;
+    private long lastFrame;
+
+    private LatestFrameWorker<BufferedImage> worker;
+    private CameraService.Subscription subscription;
+    // Current track, owned by the worker: where the face was last seen, for how many frames it has held
+    // still, how often it was identified, and whether it is settled (nothing more to do until it leaves)
+    private Rectangle trackedFace;
+    private int stable;
+    private int attempts;
+    private boolean settled;
+
+    public KioskService(CameraService camera, CheckInPipeline pipeline, FaceService faceService,
+                        long subjectId, Listener listener) {
+        this.name = "kiosk-" + camera.getDeviceIndex() + "-" + subjectId;
+        this.camera = camera;
+        this.pipeline = pipeline;
+        this.subjectId = subjectId;
+        this.listener = listener;
+        this.tracker = faceService.newTracker();
+    }
+
+    // Opens (or reuses) the camera and starts checking in whoever walks up; pair with close()
+    public synchronized void start() throws IOException {
+        if (worker != null) return;
+        camera.acquire();
+        LatestFrameWorker<BufferedImage> w = new LatestFrameWorker<>(name, this::onFrame);
+        worker = w;
+        subscription = camera.subscribe(name, FPS, (frame, t) -> w.submit(CameraUtil.matToBufferedImage(frame)));
+        Metrics.gauge(name + ".fps", () -> fps);
+        Metrics.gauge(name + ".queueDepth", this::getQueueDepth);
+    }
+
+    public String getName() { return name; }
+
+    public CameraService getCamera() { return camera; }
+
+    // Frames handled per second; well below kiosk.fps means the box cannot keep up with this camera
+    public double getFramesPerSecond() { return fps; }
+
+    public double getIdentifyMillis() { return identifyMillis; }
+
+    // Work waiting on this kiosk: a frame in its mailbox plus an identification on the shared pool
+    public int getQueueDepth() {
+        LatestFrameWorker<BufferedImage> w = worker;
+        return (w != null ? w.getPending() : 0) + inFlight.get();
+    }
+
+    // Share of offered frames replaced before they could be processed
+    public double getDropRate() {
+        LatestFrameWorker<BufferedImage> w = worker;
+        return w == null || w.getSubmitted() == 0 ? 0 : (double) w.getDropped() / w.getSubmitted();
+    }
+
+    public long getPresent() { return present.get(); }
+    public long getAlreadyMarked() { return alreadyMarked.get(); }
+    public long getSuppressed() { return suppressed.get(); }
+    public long getUnrecognised() { return unrecognised.get(); }
+
+    private void onFrame(BufferedImage img) {
+        long now = System.nanoTime();
+        if (lastFrame != 0) fps = smooth(fps, 1_000_000_000.0 / Math.max(1, now - lastFrame));
+        lastFrame = now;
+        Rectangle face = tracker.update(img);
+        listener.onFace(face, img.getWidth(), img.getHeight());
+        // A lost face, or one that jumped to a different spot, starts a new track
+        if (face == null || trackedFace == null || !face.intersects(trackedFace)) {
+            stable = 0;
+            attempts = 0;
+            settled = false;
+        }
+        trackedFace = face;
+        if (face == null || settled) return;
+        // A face must hold still for a few frames, so people walking past are not identified mid-stride
+        if (++stable < STABLE_FRAMES) return;
+        stable = 0;
+        attempts++;
+
+        CheckInPipeline.Result result;
+        long started = System.nanoTime();
+        inFlight.incrementAndGet();
+        try {
+            CheckInPipeline.Capture capture = new CheckInPipeline.Capture(img, face);
+            result = pipeline.identifyCapture(subjectId, () -> capture, this::admit, null).future().join();
+        } catch (CompletionException e) {
+            if (CheckInPipeline.isBusy(e)) {
+                // The shared pool is saturated: shed this attempt and retry on the next steady frames
+                attempts--;
+                Metrics.increment("kiosk.busy");
+                return;
+            }
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            System.err.println(name + " check-in failed: " + cause.getMessage());
+            // Retried on the next steady frames, up to the per-track limit
+            settled = attempts >= IDENTIFY_ATTEMPTS;
+            return;
+        } finally {
+            inFlight.decrementAndGet();
+            identifyMillis = smooth(identifyMillis, (System.nanoTime() - started) / 1_000_000.0);
+        }
+        switch (result.getOutcome()) {
+            case PRESENT -> {
+                present.incrementAndGet();
+                Metrics.increment("kiosk.present");
+                markSeen(result.getUser());
+            }
+            case ALREADY_MARKED -> {
+                alreadyMarked.incrementAndGet();
+                markSeen(result.getUser());
+            }
+            case SUPPRESSED -> {
+                suppressed.incrementAndGet();
+                settled = true;
+                return; // the person was already reported moments ago
+            }
+            case NOT_IDENTIFIED -> {
+                // A blurred or turned face may still be recognised on a later frame of the same track
+                if (attempts < IDENTIFY_ATTEMPTS) return;
+                unrecognised.incrementAndGet();
+                Metrics.increment("kiosk.unrecognised");
+            }
+            default -> { }
+        }
+        settled = true;
+        listener.onCheckIn(result);
+    }
+
+    // Users checked in within the cooldown window are not recorded again; runs on the pipeline after identification
+    private boolean admit(User user) {
+        long now = System.currentTimeMillis();
+        synchronized (lastSeen) {
+            lastSeen.values().removeIf(t -> now - t >= COOLDOWN_MILLIS);
+            return !lastSeen.containsKey(user.getId());
+        }
+    }
+
+    // Starts the cooldown only once the check-in is settled, so a failed write does not hide the user
+    private void markSeen(User user) {
+        if (user == null) return;
+        synchronized (lastSeen) {
+            lastSeen.put(user.getId(), System.currentTimeMillis());
+        }
+    }
+
+    // Stops after the frame in progress and releases the camera
+    @Override
+    public synchronized void close() {
+        if (worker == null) return;
+        subscription.close();
+        worker.close();
+        worker = null;
+        subscription = null;
+        Metrics.removeGauge(name + ".fps");
+        Metrics.removeGauge(name + ".queueDepth");
+        camera.release();
+        System.out.println(name + ": " + present.get() + " present, " + alreadyMarked.get()
+                + " already marked, " + unrecognised.get() + " unrecognised, " + suppressed.get() + " repeats suppressed");
+    }
+
+    private static double smooth(double previous, double sample) {
+        return previous == 0 ? sample : previous * 0.9 + sample * 0.1;
+    }
+}
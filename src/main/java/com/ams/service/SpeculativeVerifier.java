@@ -0,0 +1,132 @@
+package com.ams.service;
+
+import com.ams.config.Config;
+import com.ams.model.User;
+import com.ams.util.CameraUtil;
+import com.ams.util.Metrics;
+import org.bytedeco.javacpp.PointerScope;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Verifies the logged-in user ahead of the capture click. Once the detector has reported a face on
+// K consecutive frames, the latest such frame is verified in the background; an accepted result stays
+// usable while the face remains continuously detected and the result is younger than the max age.
+// Results that are rejected, go stale or are replaced before a click are counted as discarded.
+public class SpeculativeVerifier implements AutoCloseable {
+    public static final boolean ENABLED = Boolean.parseBoolean(Config.get("face.speculative.enabled", "true"));
+    private static final int STABLE_FRAMES = Integer.parseInt(Config.get("face.speculative.stableFrames", "3"));
+    private static final long MAX_AGE_MILLIS = Long.parseLong(Config.get("face.speculative.maxAgeMillis", "1500"));
+
+    // An accepted verification of one frame, ready to be recorded without verifying again
+    public static final class Speculation {
+        private final BufferedImage image;
+        private final VerificationResult verification;
+        private final long completedAt;
+        private final long streak;
+
+        Speculation(BufferedImage image, VerificationResult verification, long completedAt, long streak) {
+            this.image = image;
+            this.verification = verification;
+            this.completedAt = completedAt;
+            this.streak = streak;
+        }
+
+        public BufferedImage getImage() { return image; }
+        public VerificationResult getVerification() { return verification; }
+    }
+
+    private final FaceService faceService;
+    private final User user;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "speculative-verify");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Guarded by this. A streak is a run of consecutive frames with a face; losing the face starts a new one.
+    private long streak;
+    private int stableFrames;
+    private boolean inFlight;
+    private Speculation cached;
+    private long used;
+    private long discarded;
+
+    public SpeculativeVerifier(FaceService faceService, User user) {
+        this.faceService = faceService;
+        this.user = user;
+    }
+
+    // Detection worker: outcome of the latest detection (face null when none)
+    public synchronized void onDetection(BufferedImage image, Rectangle face) {
+        long now = System.currentTimeMillis();
+        if (face == null) {
+            streak++;
+            stableFrames = 0;
+            discardCached();
+            return;
+        }
+        stableFrames++;
+        if (cached != null && now - cached.completedAt > MAX_AGE_MILLIS) discardCached();
+        if (stableFrames < STABLE_FRAMES || inFlight || cached != null) return;
+
+        inFlight = true;
+        long startedStreak = streak;
+        Rectangle faceCopy = new Rectangle(face);
+        Metrics.increment("face.speculative.started");
+        executor.execute(() -> {
+            VerificationResult result = null;
+            try (PointerScope scope = new PointerScope()) {
+                result = faceService.verify(user, CameraUtil.bufferedImageToMat(image), faceCopy);
+            } catch (RuntimeException e) {
+                System.err.println("Speculative verification failed: " + e.getMessage());
+            }
+            completed(image, result, startedStreak);
+        });
+    }
+
+    // Capture click: an accepted result for the face currently in view, or null to verify normally
+    public synchronized Speculation take() {
+        Speculation s = cached;
+        if (s == null || s.streak != streak || System.currentTimeMillis() - s.completedAt > MAX_AGE_MILLIS) return null;
+        cached = null;
+        used++;
+        Metrics.increment("face.speculative.used");
+        return s;
+    }
+
+    public synchronized long getUsed() { return used; }
+
+    public synchronized long getDiscarded() { return discarded; }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        synchronized (this) {
+            discardCached();
+        }
+        System.out.println("Speculative verification: " + getUsed() + " used, " + getDiscarded() + " discarded");
+    }
+
+    private synchronized void completed(BufferedImage image, VerificationResult result, long startedStreak) {
+        inFlight = false;
+        if (result == null || !result.isAccepted() || startedStreak != streak) {
+            countDiscarded();
+            return;
+        }
+        cached = new Speculation(image, result, System.currentTimeMillis(), startedStreak);
+    }
+
+    private void discardCached() {
+        if (cached == null) return;
+        cached = null;
+        countDiscarded();
+    }
+
+    private void countDiscarded() {
+        discarded++;
+        Metrics.increment("face.speculative.discarded");
+    }
+}
@@ -0,0 +1,78 @@
+package com.ams.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Outcome of a single face verification: every score is computed at most once,
+// unset scores stay NaN/-1 when evaluation stopped before reaching their stage
+public class VerificationResult {
+    public enum Stage { INPUT, ALTERNATIVE, TEMPLATE, FEATURES, ERROR }
+
+    private boolean accepted;
+    private Stage decidedBy;
+    private String reason;
+    private double templateScore = Double.NaN;
+    private int goodMatches = -1;
+    private int totalMatches = -1;
+    private double goodMatchRatio = Double.NaN;
+    private double avgDistance = Double.NaN;
+    private double histogramCorrelation = Double.NaN;
+    private final Map<String, Long> timingsNanos = new LinkedHashMap<>();
+
+    VerificationResult decide(boolean accepted, Stage decidedBy, String reason) {
+        this.accepted = accepted;
+        this.decidedBy = decidedBy;
+        this.reason = reason;
+        return this;
+    }
+
+    void setTemplateScore(double templateScore) { this.templateScore = templateScore; }
+
+    void setFeatureScores(int goodMatches, int totalMatches, double goodMatchRatio, double avgDistance) {
+        this.goodMatches = goodMatches;
+        this.totalMatches = totalMatches;
+        this.goodMatchRatio = goodMatchRatio;
+        this.avgDistance = avgDistance;
+    }
+
+    void setHistogramCorrelation(double histogramCorrelation) { this.histogramCorrelation = histogramCorrelation; }
+
+    void addTiming(String stage, long nanos) { timingsNanos.merge(stage, nanos, Long::sum); }
+
+    public boolean isAccepted() { return accepted; }
+    public Stage getDecidedBy() { return decidedBy; }
+    public String getReason() { return reason; }
+    public double getTemplateScore() { return templateScore; }
+    public int getGoodMatches() { return goodMatches; }
+    public int getTotalMatches() { return totalMatches; }
+    public double getGoodMatchRatio() { return goodMatchRatio; }
+    public double getAvgDistance() { return avgDistance; }
+    public double getHistogramCorrelation() { return histogramCorrelation; }
+    public Map<String, Long> getTimingsNanos() { return Collections.unmodifiableMap(timingsNanos); }
+
+    public long getTotalNanos() {
+        long total = 0;
+        for (long t : timingsNanos.values()) total += t;
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(accepted ? "ACCEPTED" : "REJECTED").append(" by ").append(decidedBy).append(" (").append(reason).append(")");
+        sb.append(String.format(" template=%.4f", templateScore));
+        if (totalMatches >= 0) {
+            sb.append(String.format(" orb=%d/%d ratio=%.2f avgDist=%.2f", goodMatches, totalMatches, goodMatchRatio, avgDistance));
+        }
+        if (!Double.isNaN(histogramCorrelation)) sb.append(String.format(" hist=%.4f", histogramCorrelation));
+        sb.append(" timings[");
+        boolean first = true;
+        for (Map.Entry<String, Long> e : timingsNanos.entrySet()) {
+            if (!first) sb.append(", ");
+            sb.append(e.getKey()).append('=').append(String.format("%.1fms", e.getValue() / 1_000_000.0));
+            first = false;
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,51 @@
+package com.ams.service;
+
+import org.bytedeco.opencv.global.opencv_videoio;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_videoio.VideoCapture;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Replays a recorded video through OpenCV's file decoder
+public class VideoFileFrameSource implements FrameSource {
+    private final Path file;
+    private final VideoCapture capture;
+    private final boolean loop;
+    private final FramePacer pacer;
+
+    // fps < 0 plays at the video's own frame rate, 0 as fast as frames decode
+    public VideoFileFrameSource(Path file, double fps, boolean loop) throws IOException {
+        this.file = file;
+        this.capture = new VideoCapture(file.toString());
+        if (!capture.isOpened()) {
+            capture.close();
+            throw new IOException("Cannot open video " + file);
+        }
+        this.loop = loop;
+        this.pacer = new FramePacer(fps < 0 ? capture.get(opencv_videoio.CAP_PROP_FPS) : fps);
+    }
+
+    @Override
+    public boolean read(Mat frame) throws InterruptedException {
+        boolean ok = capture.read(frame) && !frame.empty();
+        if (!ok && loop) {
+            capture.set(opencv_videoio.CAP_PROP_POS_FRAMES, 0);
+            ok = capture.read(frame) && !frame.empty();
+        }
+        if (ok) pacer.pace();
+        return ok;
+    }
+
+    @Override
+    public boolean isLive() { return false; }
+
+    @Override
+    public String describe() { return "video:" + file; }
+
+    @Override
+    public void close() {
+        capture.release();
+        capture.close();
+    }
+}
@@ -29,6 +29,7 @@ public class AdminMaintenance {
                     ps.setLong(1, adminId);
                     ps.executeUpdate();
                 }
+                st.executeUpdate("DELETE FROM user_face_templates WHERE user_id NOT IN (SELECT id FROM users)");
             }
             c.commit();
         } catch (SQLException e) {
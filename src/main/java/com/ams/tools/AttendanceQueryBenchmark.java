@@ -0,0 +1,117 @@
+package com.ams.tools;
+
+import com.ams.db.DatabaseInitializer;
+import com.ams.db.Migration;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Random;
+
+// Per-lookup latency of the per-day attendance queries on a large table. Fills a fresh database
+// (in-memory H2 by default) with synthetic marks spread over a year, times the old DATE(marked_at)
+// queries against the table as it was (no per-day indexes), then builds the migration's indexes and
+// times the attendance_date queries. Both forms look up the same random keys.
+// Usage: AttendanceQueryBenchmark [rows=2000000] [lookups=200] [jdbcUrl user password]
+public class AttendanceQueryBenchmark {
+    private static final int USERS = 5000;
+    private static final int SUBJECTS = 20;
+    private static final int DAYS = 365;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2025, 1, 1);
+
+    public static void main(String[] args) throws SQLException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        String url = args.length > 2 ? args[2] : "jdbc:h2:mem:attendance_bench;MODE=MySQL;DATABASE_TO_UPPER=false";
+        String user = args.length > 3 ? args[3] : "sa";
+        String password = args.length > 4 ? args[4] : "";
+
+        try (Connection c = DriverManager.getConnection(url, user, password)) {
+            DatabaseInitializer.migrate(c);
+            // Start from the pre-migration table: no per-day indexes (this also makes the bulk load faster)
+            Migration.dropIndexIfExists(c, "attendance_records", "uq_att_user_subject_date");
+            Migration.dropIndexIfExists(c, "attendance_records", "idx_att_user_subject_date");
+            Migration.dropIndexIfExists(c, "attendance_records", "idx_att_date");
+            fill(c, rows);
+
+            System.out.println("Before: DATE(marked_at) predicates, no per-day indexes");
+            time(c, "  one student, subject and day", "SELECT 1 FROM attendance_records WHERE user_id = ? AND subject_id = ? AND DATE(marked_at) = ? LIMIT 1",
+                    lookups, true);
+            time(c, "  all marks of a day         ", "SELECT id, user_id, subject_id, status, marked_at FROM attendance_records WHERE DATE(marked_at) = ? ORDER BY marked_at DESC",
+                    Math.max(1, lookups / 10), false);
+
+            long start = System.nanoTime();
+            // Synthetic marks repeat (user, subject, day), so the composite index is built non-unique; lookups use it the same way
+            Migration.createIndexIfMissing(c, "attendance_records", "idx_att_user_subject_date", "user_id, subject_id, attendance_date");
+            Migration.createIndexIfMissing(c, "attendance_records", "idx_att_date", "attendance_date");
+            System.out.printf("Built per-day indexes in %.1f s%n", (System.nanoTime() - start) / 1e9);
+
+            System.out.println("After: attendance_date predicates with indexes");
+            time(c, "  one student, subject and day", "SELECT 1 FROM attendance_records WHERE user_id = ? AND subject_id = ? AND attendance_date = ? LIMIT 1",
+                    lookups, true);
+            time(c, "  all marks of a day         ", "SELECT id, user_id, subject_id, status, marked_at FROM attendance_records WHERE attendance_date = ? ORDER BY marked_at DESC",
+                    Math.max(1, lookups / 10), false);
+        }
+    }
+
+    private static void fill(Connection c, int rows) throws SQLException {
+        long start = System.nanoTime();
+        Random rnd = new Random(42);
+        boolean autoCommit = c.getAutoCommit();
+        c.setAutoCommit(false);
+        try (PreparedStatement ps = c.prepareStatement("INSERT INTO attendance_records(user_id, subject_id, status, source, marked_at, attendance_date) VALUES(?,?,?,?,?,?)")) {
+            for (int i = 0; i < rows; i++) {
+                LocalDate day = FIRST_DAY.plusDays(rnd.nextInt(DAYS));
+                LocalDateTime at = day.atTime(8 + rnd.nextInt(10), rnd.nextInt(60), rnd.nextInt(60));
+                ps.setLong(1, 1 + rnd.nextInt(USERS));
+                ps.setLong(2, 1 + rnd.nextInt(SUBJECTS));
+                ps.setString(3, rnd.nextInt(10) == 0 ? "ABSENT" : "PRESENT");
+                ps.setString(4, "CAMERA");
+                ps.setTimestamp(5, Timestamp.valueOf(at));
+                ps.setDate(6, Date.valueOf(day));
+                ps.addBatch();
+                if (i % 10_000 == 9_999) {
+                    ps.executeBatch();
+                    c.commit();
+                }
+            }
+            ps.executeBatch();
+            c.commit();
+        } finally {
+            c.setAutoCommit(autoCommit);
+        }
+        System.out.printf("Inserted %,d rows in %.1f s%n", rows, (System.nanoTime() - start) / 1e9);
+    }
+
+    private static void time(Connection c, String label, String sql, int lookups, boolean perStudent) throws SQLException {
+        Random rnd = new Random(7);
+        long[] nanos = new long[lookups];
+        long matched = 0;
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            for (int i = 0; i < lookups; i++) {
+                int p = 1;
+                if (perStudent) {
+                    ps.setLong(p++, 1 + rnd.nextInt(USERS));
+                    ps.setLong(p++, 1 + rnd.nextInt(SUBJECTS));
+                }
+                ps.setDate(p, Date.valueOf(FIRST_DAY.plusDays(rnd.nextInt(DAYS))));
+                long start = System.nanoTime();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) matched++;
+                }
+                nanos[i] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(nanos);
+        System.out.printf("%s: avg %.3f ms, p50 %.3f ms, p99 %.3f ms (%d lookups, %d rows matched)%n", label,
+                Arrays.stream(nanos).average().orElse(0) / 1e6, nanos[lookups / 2] / 1e6,
+                nanos[Math.min(lookups - 1, (int) (lookups * 0.99))] / 1e6, lookups, matched);
+    }
+}
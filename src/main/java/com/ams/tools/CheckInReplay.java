@@ -0,0 +1,110 @@
+package com.ams.tools;
+
+import com.ams.dao.UserDao;
+import com.ams.db.DatabaseInitializer;
+import com.ams.model.User;
+import com.ams.service.AttendanceService;
+import com.ams.service.CheckInPipeline;
+import com.ams.service.FaceGallery;
+import com.ams.service.FaceService;
+import com.ams.service.FaceTracker;
+import com.ams.service.FrameSource;
+import com.ams.util.CameraUtil;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Drives recorded sessions through the real detect -> verify -> mark pipeline without a camera or UI,
+// reporting throughput, per-frame latency and outcomes. Attendance is only written with --mark.
+// Usage: CheckInReplay <images:<dir>|video:<file>> (--user <id> | --identify) --subject <id>
+//                      [--fps <n>=0 unthrottled] [--max <frames>] [--mark]
+public class CheckInReplay {
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.out.println("Usage: CheckInReplay <images:<dir>|video:<file>> (--user <id> | --identify) --subject <id> "
+                    + "[--fps <n>] [--max <frames>] [--mark]");
+            return;
+        }
+        String spec = args[0];
+        long userId = -1;
+        long subjectId = -1;
+        double fps = 0;
+        long maxFrames = Long.MAX_VALUE;
+        boolean identify = false;
+        boolean mark = false;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--user" -> userId = Long.parseLong(args[++i]);
+                case "--identify" -> identify = true;
+                case "--subject" -> subjectId = Long.parseLong(args[++i]);
+                case "--fps" -> fps = Double.parseDouble(args[++i]);
+                case "--max" -> maxFrames = Long.parseLong(args[++i]);
+                case "--mark" -> mark = true;
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        DatabaseInitializer.init();
+        User user = null;
+        if (!identify) {
+            user = new UserDao().findById(userId);
+            if (user == null) throw new IllegalArgumentException("No user with id " + userId);
+        }
+        FaceService faceService = new FaceService();
+        FaceTracker tracker = faceService.newTracker();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CheckInPipeline pipeline = new CheckInPipeline(faceService, FaceGallery.shared(),
+                mark ? new AttendanceService() : new DryRunAttendance(), executor, null);
+        if (identify) FaceGallery.shared().reload();
+
+        Map<CheckInPipeline.Outcome, Integer> outcomes = new EnumMap<>(CheckInPipeline.Outcome.class);
+        long[] latencies = new long[1024];
+        int frames = 0;
+        long start = System.nanoTime();
+        try (FrameSource source = FrameSource.open(spec, 0, fps, false); Mat frame = new Mat()) {
+            System.out.println("Replaying " + source.describe() + (mark ? "" : " (dry run)"));
+            while (frames < maxFrames && source.read(frame)) {
+                BufferedImage img = CameraUtil.matToBufferedImage(frame);
+                long t0 = System.nanoTime();
+                CheckInPipeline.Job job = identify
+                        ? pipeline.identify(subjectId, () -> img, null)
+                        : pipeline.verify(user, subjectId, false, () -> img, tracker, null);
+                CheckInPipeline.Result result = job.future().join();
+                if (frames == latencies.length) latencies = Arrays.copyOf(latencies, frames * 2);
+                latencies[frames++] = System.nanoTime() - t0;
+                outcomes.merge(result.getOutcome(), 1, Integer::sum);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long[] sorted = Arrays.copyOf(latencies, frames);
+        Arrays.sort(sorted);
+        System.out.printf("%d frames in %.2f s (%.1f frames/s)%n", frames, seconds, frames / Math.max(seconds, 1e-9));
+        if (frames > 0) {
+            System.out.printf("per frame: mean %.1f ms, p50 %.1f ms, p95 %.1f ms, max %.1f ms%n",
+                    Arrays.stream(sorted).average().orElse(0) / 1e6, sorted[frames / 2] / 1e6,
+                    sorted[Math.min(frames - 1, (int) (frames * 0.95))] / 1e6, sorted[frames - 1] / 1e6);
+        }
+        outcomes.forEach((o, n) -> System.out.println("  " + o + ": " + n));
+        System.out.printf("tracker: %d full detections, %d tracked frames%n", tracker.getFullDetections(), tracker.getTrackedFrames());
+    }
+
+    // Runs every stage but never reads or writes attendance rows
+    private static final class DryRunAttendance extends AttendanceService {
+        @Override
+        public boolean hasAttendanceToday(long userId, long subjectId) { return false; }
+
+        @Override
+        public void markPresentWithCheck(long userId, long subjectId, String source, String checkInPhotoPath) { }
+
+        @Override
+        public void markAbsentWithCheck(long userId, long subjectId, String source, String checkInPhotoPath) { }
+    }
+}
@@ -0,0 +1,98 @@
+package com.ams.tools;
+
+import com.ams.service.FaceDetector;
+import com.ams.service.FaceModelRegistry;
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.opencv.global.opencv_imgcodecs;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Detection latency vs. recall on a directory of sample images. Ground truth is the exhaustive
+// full-resolution REFERENCE search; each detection width runs the face.detect.* parameters and a face
+// counts as recalled when a detection overlaps it with IoU > 0.5.
+// Usage: DetectionBenchmark <imageDir> [widths=0,480,320,240] [iterations=5]
+public class DetectionBenchmark {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: DetectionBenchmark <imageDir> [widths=0,480,320,240] [iterations=5]");
+            return;
+        }
+        Path dir = Path.of(args[0]);
+        String[] widths = (args.length > 1 ? args[1] : "0,480,320,240").split(",");
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        List<Path> images;
+        try (Stream<Path> files = Files.list(dir)) {
+            images = files.filter(p -> p.getFileName().toString().matches("(?i).*\\.(jpe?g|png|bmp)")).sorted().toList();
+        }
+        try {
+            run(images, widths, iterations);
+        } catch (LinkageError e) {
+            System.out.println("Skipped, OpenCV natives unavailable (" + e.getMessage() + ")");
+        }
+    }
+
+    private static void run(List<Path> images, String[] widths, int iterations) {
+        FaceModelRegistry models = FaceModelRegistry.get();
+        if (!models.hasCascade()) {
+            System.out.println("Skipped, no Haar cascade available");
+            return;
+        }
+        FaceDetector.Params configured = FaceDetector.Params.fromConfig("face.detect", FaceDetector.PRESENCE);
+        FaceDetector truthDetector = new FaceDetector(models, FaceDetector.REFERENCE);
+
+        try (PointerScope scope = new PointerScope()) {
+            List<Mat> grays = new ArrayList<>();
+            List<List<Rectangle>> truth = new ArrayList<>();
+            int totalFaces = 0;
+            for (Path p : images) {
+                Mat img = opencv_imgcodecs.imread(p.toString());
+                if (img == null || img.empty()) continue;
+                Mat gray = new Mat();
+                opencv_imgproc.cvtColor(img, gray, opencv_imgproc.COLOR_BGR2GRAY);
+                grays.add(gray);
+                List<Rectangle> faces = truthDetector.detect(gray);
+                truth.add(faces);
+                totalFaces += faces.size();
+            }
+            System.out.printf("%d images, %d reference faces; params %s%n", grays.size(), totalFaces, configured);
+            System.out.println("width   ms/frame   recall   detections");
+
+            for (String w : widths) {
+                FaceDetector detector = new FaceDetector(models, configured.withDetectWidth(Integer.parseInt(w.trim())));
+                for (Mat g : grays) detector.detect(g); // warm-up
+                int recalled = 0;
+                int detections = 0;
+                long nanos = 0;
+                for (int i = 0; i < grays.size(); i++) {
+                    List<Rectangle> found = null;
+                    long start = System.nanoTime();
+                    for (int k = 0; k < iterations; k++) found = detector.detect(grays.get(i));
+                    nanos += System.nanoTime() - start;
+                    detections += found.size();
+                    for (Rectangle t : truth.get(i)) {
+                        if (found.stream().anyMatch(f -> iou(t, f) > 0.5)) recalled++;
+                    }
+                }
+                double ms = grays.isEmpty() ? 0 : nanos / 1_000_000.0 / (grays.size() * (double) iterations);
+                double recall = totalFaces == 0 ? Double.NaN : (double) recalled / totalFaces;
+                System.out.printf("%-7s %8.2f   %6.3f   %d%n", w.trim().equals("0") ? "full" : w.trim(), ms, recall, detections);
+            }
+        }
+    }
+
+    private static double iou(Rectangle a, Rectangle b) {
+        Rectangle i = a.intersection(b);
+        if (i.isEmpty()) return 0;
+        double inter = (double) i.width * i.height;
+        return inter / ((double) a.width * a.height + (double) b.width * b.height - inter);
+    }
+}
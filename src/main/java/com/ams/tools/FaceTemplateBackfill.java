@@ -0,0 +1,67 @@
+package com.ams.tools;
+
+import com.ams.dao.UserDao;
+import com.ams.db.DatabaseInitializer;
+import com.ams.model.FaceTemplateRecord;
+import com.ams.model.User;
+import com.ams.service.FaceService;
+import com.ams.service.FaceTemplateStore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Computes and stores face templates for every user with a registered photo, e.g. after an upgrade
+// or a TEMPLATE_VERSION bump. Users whose stored template already matches their photo are skipped.
+// Usage: FaceTemplateBackfill [--force]
+public class FaceTemplateBackfill {
+    public static void main(String[] args) throws Exception {
+        boolean force = args.length > 0 && "--force".equals(args[0]);
+        DatabaseInitializer.init();
+        List<User> users = new UserDao().listAll();
+        FaceTemplateStore store = FaceTemplateStore.shared();
+        Map<Long, FaceTemplateRecord> stored = store.loadAll();
+
+        AtomicInteger built = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            FaceService faceService = new FaceService();
+            List<Future<?>> tasks = new ArrayList<>();
+            for (User u : users) {
+                if (u.getPhotoPath() == null || u.getPhotoPath().isBlank()) continue;
+                tasks.add(pool.submit(() -> {
+                    Path photo = Path.of(u.getPhotoPath());
+                    try {
+                        if (!Files.exists(photo)) {
+                            System.err.println("Missing photo for " + u.getUsername() + ": " + photo);
+                            failed.incrementAndGet();
+                        } else if (!force && store.isCurrent(stored.get(u.getId()), photo)) {
+                            skipped.incrementAndGet();
+                        } else {
+                            if (force) store.delete(u.getId());
+                            if (faceService.enroll(u)) built.incrementAndGet();
+                            else failed.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        System.err.println("Failed for " + u.getUsername() + ": " + e.getMessage());
+                        failed.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> f : tasks) f.get();
+        } finally {
+            pool.shutdown();
+        }
+        System.out.printf("Face templates: %d built, %d up to date, %d failed (%d users) in %d ms%n",
+                built.get(), skipped.get(), failed.get(), users.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,72 @@
+package com.ams.tools;
+
+import com.ams.service.HammingMatcher;
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.opencv_core.DMatchVector;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_features2d.BFMatcher;
+
+import java.util.Random;
+
+// Compares HammingMatcher against BFMatcher(NORM_HAMMING, crossCheck) on synthetic ORB-sized
+// descriptor sets and checks both produce the same matches.
+// Usage: MatcherBenchmark [descriptorsPerSide=500] [iterations=200]
+public class MatcherBenchmark {
+    private static final int BYTES = 32;
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        Random rnd = new Random(42);
+        byte[] query = new byte[rows * BYTES];
+        rnd.nextBytes(query);
+        // Train set: noisy copies of the query descriptors, like the same face seen twice
+        byte[] train = query.clone();
+        for (int i = 0; i < train.length; i++) {
+            if (rnd.nextInt(8) == 0) train[i] ^= (byte) (1 << rnd.nextInt(8));
+        }
+
+        long[] q = HammingMatcher.pack(query, rows, BYTES);
+        long[] t = HammingMatcher.pack(train, rows, BYTES);
+        int words = HammingMatcher.wordsPerRow(BYTES);
+        HammingMatcher.Matches javaMatches = null;
+        for (int i = 0; i < iterations; i++) javaMatches = HammingMatcher.matchCrossChecked(q, t, words); // warm-up
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) javaMatches = HammingMatcher.matchCrossChecked(q, t, words);
+        double javaMs = (System.nanoTime() - start) / 1_000_000.0 / iterations;
+        System.out.printf("HammingMatcher: %d matches, %.3f ms/op%n", javaMatches.size(), javaMs);
+
+        try {
+            benchmarkOpenCv(query, train, rows, iterations, javaMatches, javaMs);
+        } catch (LinkageError e) {
+            System.out.println("BFMatcher: skipped, OpenCV natives unavailable (" + e.getMessage() + ")");
+        }
+    }
+
+    private static void benchmarkOpenCv(byte[] query, byte[] train, int rows, int iterations,
+                                        HammingMatcher.Matches javaMatches, double javaMs) {
+        try (PointerScope scope = new PointerScope()) {
+            Mat q = new Mat(rows, BYTES, opencv_core.CV_8UC1);
+            Mat t = new Mat(rows, BYTES, opencv_core.CV_8UC1);
+            q.data().put(query);
+            t.data().put(train);
+            BFMatcher matcher = new BFMatcher(opencv_core.NORM_HAMMING, true);
+            DMatchVector matches = new DMatchVector();
+            for (int i = 0; i < iterations; i++) matcher.match(q, t, matches); // warm-up
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) matcher.match(q, t, matches);
+            double cvMs = (System.nanoTime() - start) / 1_000_000.0 / iterations;
+            System.out.printf("BFMatcher:      %d matches, %.3f ms/op (%.1fx)%n", matches.size(), cvMs, cvMs / javaMs);
+
+            boolean same = matches.size() == javaMatches.size();
+            for (int k = 0; same && k < javaMatches.size(); k++) {
+                same = matches.get(k).queryIdx() == javaMatches.queryIdx(k)
+                        && matches.get(k).trainIdx() == javaMatches.trainIdx(k)
+                        && (int) matches.get(k).distance() == javaMatches.distance(k);
+            }
+            System.out.println("Identical matches: " + same);
+        }
+    }
+}
@@ -7,6 +7,7 @@ import com.ams.model.AttendanceRecord;
 import com.ams.model.User;
 import com.ams.model.Subject;
 import com.ams.service.ExportService;
+import com.ams.util.AttendanceClock;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
@@ -310,7 +311,7 @@ public class AttendancePanel extends JPanel {
         if (confirm != JOptionPane.YES_OPTION) return;
         
         try {
-            attendanceDao.deleteByDate(LocalDate.now());
+            attendanceDao.deleteByDate(AttendanceClock.today());
             load();
             JOptionPane.showMessageDialog(this, "Today's attendance records have been cleared.");
         } catch (SQLException e) {
@@ -375,7 +376,7 @@ public class AttendancePanel extends JPanel {
         );
         
         if (choice != null) {
-            LocalDate date = choice.equals("Today's Records") ? LocalDate.now() : null;
+            LocalDate date = choice.equals("Today's Records") ? AttendanceClock.today() : null;
             String data = exportService.generateGoogleSheetsFormat(date);
             
             // Copy to clipboard
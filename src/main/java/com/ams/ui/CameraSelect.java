@@ -0,0 +1,26 @@
+package com.ams.ui;
+
+import com.ams.service.CameraService;
+
+import javax.swing.*;
+import java.awt.*;
+
+// Camera picker listing the devices CameraService found (or camera.devices), shown as "Camera N"
+public class CameraSelect extends JComboBox<Integer> {
+    public CameraSelect() {
+        super(CameraService.availableDevices().toArray(Integer[]::new));
+        setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                return super.getListCellRendererComponent(list, value != null ? "Camera " + value : "", index,
+                        isSelected, cellHasFocus);
+            }
+        });
+    }
+
+    public CameraService getSelectedCamera() {
+        Integer index = (Integer) getSelectedItem();
+        return CameraService.forDevice(index != null ? index : 0);
+    }
+}
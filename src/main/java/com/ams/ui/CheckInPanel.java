@@ -5,19 +5,20 @@ import com.ams.dao.SubjectDao;
 import com.ams.model.User;
 import com.ams.model.Subject;
 import com.ams.service.AttendanceService;
+import com.ams.service.BestFrameBuffer;
+import com.ams.service.CameraService;
+import com.ams.service.CheckInPipeline;
+import com.ams.service.FaceGallery;
 import com.ams.service.FaceService;
+import com.ams.service.FaceTracker;
+import com.ams.service.SpeculativeVerifier;
 import com.ams.util.CameraUtil;
-import com.github.sarxos.webcam.Webcam;
-import org.bytedeco.opencv.opencv_core.Mat;
-import org.bytedeco.opencv.opencv_videoio.VideoCapture;
+import com.ams.util.FrameConverter;
+import com.ams.util.LatestFrameWorker;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.List;
@@ -26,23 +27,38 @@ public class CheckInPanel extends JPanel {
     private final User currentUser;
     private final JLabel usernameLabel = new JLabel();
     private final JComboBox<Subject> subjectSelect = new JComboBox<>();
-    private final JComboBox<String> cameraSelect = new JComboBox<>(new String[]{"Auto (0)", "Camera 0", "Camera 1", "Camera 2", "Camera 3"});
-    private final JLabel cameraLabel = new JLabel("Camera not started", SwingConstants.CENTER);
+    private final CameraSelect cameraSelect = new CameraSelect();
+    // Preview frames are converted into two reused buffers and painted by the preview component
+    private final PreviewPanel cameraView = new PreviewPanel(new FrameConverter(640, 480));
     private final JLabel statusLabel = new JLabel(" ");
     private final JButton startBtn = new JButton("Start Camera");
     private final JButton stopBtn = new JButton("Stop Camera");
     private final JButton captureBtn = new JButton("Capture & Verify");
+    private final JCheckBox walkUpBox = new JCheckBox("Walk-up (identify)");
 
     private final UserDao userDao = new UserDao();
     private final SubjectDao subjectDao = new SubjectDao();
     private final AttendanceService attendanceService = new AttendanceService();
     private final FaceService faceService = new FaceService();
+    private final FaceGallery faceGallery = FaceGallery.shared();
+    private final CheckInPipeline checkInPipeline = new CheckInPipeline(faceService, faceGallery, attendanceService);
+    private final JProgressBar progressBar = new JProgressBar();
+    // Attempt in flight, owned by the EDT; cancelled when the camera stops
+    private CheckInPipeline.Job checkInJob;
+    // Verifies the logged-in user in the background once the face is steady; null when disabled
+    private volatile SpeculativeVerifier speculative;
+    private volatile boolean walkUpMode;
+    // Recent face frames scored for sharpness, size and centering; captures verify the best one
+    private final BestFrameBuffer bestFrames = new BestFrameBuffer();
 
-    // Preferred backend: OpenCV VideoCapture; fallback to webcam-capture
-    private VideoCapture videoCapture;
-    private Webcam webcam;
+    // Shared, long-lived camera of the selected device; this panel subscribes to its frames while running
+    private volatile CameraService camera;
+    private CameraService.Subscription previewSubscription;
+    private CameraService.Subscription detectionSubscription;
+    private LatestFrameWorker<BufferedImage> detector;
     private volatile boolean running = false;
     private volatile boolean faceDetected = false;
+    private volatile FaceTracker tracker;
     private int attemptCount = 0;
     private static final int MAX_ATTEMPTS = 3;
 
@@ -69,15 +85,26 @@ public class CheckInPanel extends JPanel {
         captureBtn.addActionListener(e -> onCapture());
         captureBtn.setEnabled(false);
         top.add(captureBtn);
+        // Walk-up mode identifies whoever stands at the camera, so it is only offered to admins running a kiosk
+        if (currentUser != null && "ADMIN".equalsIgnoreCase(currentUser.getRole())) {
+            walkUpBox.setToolTipText("Identify the student from all enrolled faces instead of verifying the logged-in user");
+            walkUpBox.addActionListener(e -> onWalkUpToggled());
+            top.add(walkUpBox);
+        }
         add(top, BorderLayout.NORTH);
 
-        cameraLabel.setPreferredSize(new Dimension(640, 480));
-        cameraLabel.setBorder(BorderFactory.createLineBorder(Color.GRAY));
-        add(cameraLabel, BorderLayout.CENTER);
+        cameraView.setBorder(BorderFactory.createLineBorder(Color.GRAY));
+        add(cameraView, BorderLayout.CENTER);
 
         statusLabel.setHorizontalAlignment(SwingConstants.CENTER);
         statusLabel.setFont(statusLabel.getFont().deriveFont(Font.BOLD, 14f));
-        add(statusLabel, BorderLayout.SOUTH);
+        progressBar.setIndeterminate(true);
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
+        JPanel bottom = new JPanel(new BorderLayout());
+        bottom.add(statusLabel, BorderLayout.CENTER);
+        bottom.add(progressBar, BorderLayout.EAST);
+        add(bottom, BorderLayout.SOUTH);
     }
 
 
@@ -86,120 +113,138 @@ public class CheckInPanel extends JPanel {
         try {
             startBtn.setEnabled(false);
             stopBtn.setEnabled(true);
-            cameraLabel.setText(null);
-            int idx = switch (cameraSelect.getSelectedIndex()) {
-                case 1 -> 0; // Camera 0
-                case 2 -> 1; // Camera 1
-                case 3 -> 2; // Camera 2
-                case 4 -> 3; // Camera 3
-                default -> 0; // Auto -> 0
-            };
-            videoCapture = new VideoCapture(idx);
-            if (!videoCapture.isOpened()) {
-                // fallback to default webcam-capture
-                videoCapture = null;
-                webcam = Webcam.getDefault();
-                if (webcam == null) {
-                    JOptionPane.showMessageDialog(this, "No webcam detected");
-                    return;
-                }
-                webcam.open();
-            }
+            // Opens the device only if it is not still warm from a previous check-in
+            camera = cameraSelect.getSelectedCamera();
+            camera.acquire();
             running = true;
             // Allow user to attempt capture in face-only mode
             captureBtn.setEnabled(true);
             attemptCount = 0; // Reset attempts when starting camera
-            Thread t = new Thread(this::cameraLoop, "camera-loop");
-            t.setDaemon(true);
-            t.start();
+            tracker = faceService.newTracker();
+            if (SpeculativeVerifier.ENABLED && currentUser != null
+                    && currentUser.getPhotoPath() != null && !currentUser.getPhotoPath().isBlank()) {
+                speculative = new SpeculativeVerifier(faceService, currentUser);
+            }
+            LatestFrameWorker<BufferedImage> worker = new LatestFrameWorker<>("face-detection", this::onDetectionFrame);
+            detector = worker;
+            previewSubscription = camera.subscribe("checkin-preview", CameraUtil.previewFps(), (frame, t) -> {
+                cameraView.getFrames().update(frame);
+                cameraView.frameReady();
+            });
+            // Detection keeps its own copy; preview buffers are recycled
+            detectionSubscription = camera.subscribe("checkin-detection", CameraUtil.detectFps(),
+                    (frame, t) -> worker.submit(CameraUtil.matToBufferedImage(frame)));
             SwingUtilities.invokeLater(() -> {
                 statusLabel.setText("Position your face for detection (Attempts: 0/" + MAX_ATTEMPTS + ")");
                 statusLabel.setForeground(Color.BLUE);
             });
         } catch (Exception ex) {
+            startBtn.setEnabled(true);
+            stopBtn.setEnabled(false);
             JOptionPane.showMessageDialog(this, "Failed to start camera: " + ex.getMessage());
         }
     }
 
-    private void cameraLoop() {
-        while (running) {
-            try {
-                BufferedImage img = null;
-                if (videoCapture != null) {
-                    Mat frame = new Mat();
-                    if (videoCapture.read(frame) && !frame.empty()) {
-                        img = CameraUtil.matToBufferedImage(frame);
-                    }
-                } else if (webcam != null && webcam.isOpen()) {
-                    img = webcam.getImage();
-                }
+    // Runs on the detection worker, one frame at a time, so status updates can no longer arrive out of order
+    private void onDetectionFrame(BufferedImage img) {
+        try {
+            // Tracker runs the full cascade only every few frames and searches near the last face otherwise
+            Rectangle face = tracker.update(img);
+            boolean detected = face != null;
+            faceDetected = detected;
+            cameraView.setFace(face, img.getWidth(), img.getHeight());
+            bestFrames.add(img, face);
+            SpeculativeVerifier sv = speculative;
+            if (sv != null && !walkUpMode) {
+                // Speculate on the best recent frame as well, so the cached result matches what a capture would verify
+                BestFrameBuffer.Entry best = face != null ? bestFrames.best() : null;
+                if (best != null) sv.onDetection(best.getImage(), best.getFace());
+                else sv.onDetection(img, face);
+            }
+            cameraView.setOverlay(String.format("%s  ·  %.0f fps", detected ? "Face detected" : "No face detected",
+                    camera.getMeasuredFps()), detected ? Color.GREEN : Color.ORANGE);
 
-                if (img != null) {
-                    Image scaled = img.getScaledInstance(640, 480, Image.SCALE_SMOOTH);
-                    BufferedImage finalImg = img;
-                    
-                    SwingUtilities.invokeLater(() -> cameraLabel.setIcon(new ImageIcon(scaled)));
+            SwingUtilities.invokeLater(() -> {
+                if (!running) return;
+                if (detected) {
+                    statusLabel.setText("✓ Face detected - Ready to capture! (Attempts: " + attemptCount + "/" + MAX_ATTEMPTS + ")");
+                    statusLabel.setForeground(Color.GREEN);
+                    captureBtn.setEnabled(true);
+                } else {
+                    statusLabel.setText("⚠ No face detected - Position yourself properly (Attempts: " + attemptCount + "/" + MAX_ATTEMPTS + ")");
+                    statusLabel.setForeground(Color.RED);
+                    captureBtn.setEnabled(false);
+                }
+            });
+        } catch (Exception e) {
+            SwingUtilities.invokeLater(() -> {
+                statusLabel.setText("Error in face detection");
+                statusLabel.setForeground(Color.RED);
+            });
+        }
+    }
 
-                    // Real-time face detection
-                    new Thread(() -> {
-                        try {
-                            // Save temporary image for face detection
-                            Path tempDir = Path.of("captured");
-                            Files.createDirectories(tempDir);
-                            Path tempFile = Files.createTempFile(tempDir, "temp-", ".jpg");
-                            ImageIO.write(finalImg, "jpg", tempFile.toFile());
-                            
-                            boolean detected = faceService.detectFace(tempFile);
-                            faceDetected = detected;
-                            
-                            SwingUtilities.invokeLater(() -> {
-                                if (detected) {
-                                    statusLabel.setText("✓ Face detected - Ready to capture! (Attempts: " + attemptCount + "/" + MAX_ATTEMPTS + ")");
-                                    statusLabel.setForeground(Color.GREEN);
-                                    captureBtn.setEnabled(true);
-                                } else {
-                                    statusLabel.setText("⚠ No face detected - Position yourself properly (Attempts: " + attemptCount + "/" + MAX_ATTEMPTS + ")");
-                                    statusLabel.setForeground(Color.RED);
-                                    captureBtn.setEnabled(false);
-                                }
-                            });
-                            
-                            // Clean up temp file
-                            try { Files.deleteIfExists(tempFile); } catch (Exception ignore) {}
-                        } catch (Exception e) {
-                            SwingUtilities.invokeLater(() -> {
-                                statusLabel.setText("Error in face detection");
-                                statusLabel.setForeground(Color.RED);
-                            });
-                        }
-                    }).start();
+    private void onWalkUpToggled() {
+        boolean walkUp = walkUpBox.isSelected();
+        walkUpMode = walkUp;
+        captureBtn.setText(walkUp ? "Capture & Identify" : "Capture & Verify");
+        if (walkUp && !faceGallery.isLoaded()) {
+            statusLabel.setText("Loading enrolled faces...");
+            statusLabel.setForeground(Color.BLUE);
+            Thread t = new Thread(() -> {
+                try {
+                    faceGallery.reload();
+                    SwingUtilities.invokeLater(() -> statusLabel.setText("Walk-up mode: " + faceGallery.size() + " enrolled faces loaded"));
+                } catch (SQLException ex) {
+                    SwingUtilities.invokeLater(() -> {
+                        statusLabel.setText("Failed to load enrolled faces: " + ex.getMessage());
+                        statusLabel.setForeground(Color.RED);
+                    });
                 }
-                Thread.sleep(300); // Slower to reduce CPU usage
-            } catch (InterruptedException e) {
-                break;
-            }
+            }, "face-gallery-loader");
+            t.setDaemon(true);
+            t.start();
         }
     }
 
+    // Best-scoring recent face frame, or the current camera frame when none is recent enough
+    private BufferedImage grabFrame() {
+        if (!running) return null;
+        BestFrameBuffer.Entry best = bestFrames.best();
+        return best != null ? best.getImage() : camera.snapshot();
+    }
+
+    // Same, with the face rectangle the preview tracker found when the frame was buffered, so the pipeline
+    // never re-tracks an older frame on the live tracker
+    private CheckInPipeline.Capture grabCapture() {
+        if (!running) return null;
+        BestFrameBuffer.Entry best = bestFrames.best();
+        if (best != null) return new CheckInPipeline.Capture(best.getImage(), best.getFace());
+        BufferedImage snapshot = camera.snapshot();
+        return snapshot != null ? new CheckInPipeline.Capture(snapshot, null) : null;
+    }
+
     private void onCapture() {
-        if (currentUser == null) {
-            JOptionPane.showMessageDialog(this, "No user logged in");
-            return;
-        }
-        
+        if (checkInJob != null) return; // an attempt is still running
         Subject selectedSubject = (Subject) subjectSelect.getSelectedItem();
         if (selectedSubject == null) {
             JOptionPane.showMessageDialog(this, "Please select a subject");
             return;
         }
+
+        if (walkUpBox.isSelected()) {
+            // Walk-up check-in: identify the face against every enrolled user and mark that user PRESENT
+            start(checkInPipeline.identify(selectedSubject.getId(), this::grabFrame, this::onStage), selectedSubject, true);
+            return;
+        }
+
+        if (currentUser == null) {
+            JOptionPane.showMessageDialog(this, "No user logged in");
+            return;
+        }
         
-        // Check if attendance already marked for today
-        if (attendanceService.hasAttendanceToday(currentUser.getId(), selectedSubject.getId())) {
-            JOptionPane.showMessageDialog(this, 
-                "Attendance already marked for " + selectedSubject.getName() + " today.\n" +
-                "Only one attendance per subject per day is allowed.",
-                "Already Marked", JOptionPane.WARNING_MESSAGE);
-            shutdownCamera();
+        if (currentUser.getPhotoPath() == null || currentUser.getPhotoPath().isBlank()) {
+            JOptionPane.showMessageDialog(this, "User has no registered photo. Please add one in Users tab.");
             return;
         }
         
@@ -209,132 +254,156 @@ public class CheckInPanel extends JPanel {
         }
         
         attemptCount++;
+        // A fresh accepted background verification of the face in view only leaves the attendance write
+        SpeculativeVerifier.Speculation ready = speculative != null ? speculative.take() : null;
+        if (ready != null) {
+            start(checkInPipeline.record(currentUser, selectedSubject.getId(), ready.getImage(), ready.getVerification(),
+                    this::onStage), selectedSubject, false);
+            return;
+        }
+        // Attendance check, capture, detection, verification and the DB write all run on the pipeline;
+        // the preview keeps running and the window stays responsive
+        start(checkInPipeline.verify(currentUser, selectedSubject.getId(), attemptCount >= MAX_ATTEMPTS,
+                this::grabCapture, this::onStage), selectedSubject, false);
+    }
+
+    private void start(CheckInPipeline.Job job, Subject subject, boolean walkUp) {
+        checkInJob = job;
         captureBtn.setEnabled(false);
-        
-        try {
-            BufferedImage img = null;
-            if (videoCapture != null) {
-                Mat frame = new Mat();
-                if (videoCapture.read(frame) && !frame.empty()) {
-                    img = CameraUtil.matToBufferedImage(frame);
-                }
-            } else if (webcam != null && webcam.isOpen()) {
-                img = webcam.getImage();
-            }
-            if (img == null) {
-                JOptionPane.showMessageDialog(this, "Failed to capture image");
-                attemptCount--; // Don't count failed captures
+        progressBar.setString("Starting...");
+        progressBar.setVisible(true);
+        job.future().whenComplete((result, error) -> SwingUtilities.invokeLater(() -> onCheckInFinished(job, subject, walkUp, result, error)));
+    }
+
+    // Pipeline threads report each stage; shown on the progress bar
+    private void onStage(CheckInPipeline.Stage stage) {
+        String text = switch (stage) {
+            case CHECKING -> "Checking attendance...";
+            case CAPTURING -> "Capturing...";
+            case DETECTING -> "Detecting face...";
+            case VERIFYING -> "Verifying face...";
+            case IDENTIFYING -> "Identifying...";
+            case RECORDING -> "Recording attendance...";
+        };
+        SwingUtilities.invokeLater(() -> progressBar.setString(text));
+    }
+
+    private void onCheckInFinished(CheckInPipeline.Job job, Subject subject, boolean walkUp,
+                                   CheckInPipeline.Result result, Throwable error) {
+        if (checkInJob == job) checkInJob = null;
+        progressBar.setVisible(false);
+        if (job.isCancelled() || !running) return;
+        if (error != null) {
+            if (!walkUp) attemptCount--; // Don't count technical failures as attempts
+            if (CheckInPipeline.isBusy(error)) {
+                // Every verification thread is taken (e.g. by kiosks); nothing was recorded
+                statusLabel.setText("System busy - please try again in a moment");
+                statusLabel.setForeground(Color.ORANGE);
+                captureBtn.setEnabled(faceDetected);
                 return;
             }
-            
-            Path capDir = Path.of("captured");
-            Files.createDirectories(capDir);
-            Path capFile = capDir.resolve("capture-" + System.currentTimeMillis() + ".jpg");
-            ImageIO.write(img, "jpg", capFile.toFile());
+            Throwable cause = error.getCause() != null ? error.getCause() : error;
+            JOptionPane.showMessageDialog(this, "Error capturing image: " + cause.getMessage());
+            captureBtn.setEnabled(faceDetected);
+            return;
+        }
+        if (walkUp && result.getOutcome() != CheckInPipeline.Outcome.NO_FRAME) {
+            onWalkUpFinished(subject, result);
+            captureBtn.setEnabled(faceDetected);
+            return;
+        }
 
-            if (currentUser.getPhotoPath() == null || currentUser.getPhotoPath().isBlank()) {
-                JOptionPane.showMessageDialog(this, "User has no registered photo. Please add one in Users tab.");
-                attemptCount--; // Don't count this as an attempt
+        User user = currentUser;
+        switch (result.getOutcome()) {
+            case NO_FRAME -> {
+                JOptionPane.showMessageDialog(this, "Failed to capture image");
+                if (!walkUp) attemptCount--; // Don't count failed captures
+            }
+            case ALREADY_MARKED -> {
+                statusLabel.setText("Already marked for today");
+                statusLabel.setForeground(Color.ORANGE);
+                JOptionPane.showMessageDialog(this, 
+                    "Attendance already marked for " + subject.getName() + " today.\n" +
+                    "Only one attendance per subject per day is allowed.",
+                    "Already Marked", JOptionPane.WARNING_MESSAGE);
+                shutdownCamera();
                 return;
             }
-
-            // Double-check face detection on captured image
-            boolean faceDetectedInCapture = faceService.detectFace(capFile);
-            if (!faceDetectedInCapture) {
+            case NO_FACE -> {
                 statusLabel.setText("No face detected in captured image (Attempt " + attemptCount + "/" + MAX_ATTEMPTS + ")");
                 statusLabel.setForeground(Color.RED);
-                
-                if (attemptCount >= MAX_ATTEMPTS) {
-                    // Mark as absent after 3 failed attempts
-                    try {
-                        attendanceService.markAbsentWithCheck(currentUser.getId(), selectedSubject.getId(), "CAMERA", capFile.toString());
-                        statusLabel.setText("Maximum attempts reached. Marked ABSENT for " + currentUser.getUsername());
-                        statusLabel.setForeground(Color.RED);
-                        JOptionPane.showMessageDialog(this, "No face detected after " + MAX_ATTEMPTS + " attempts. Marked ABSENT for " + currentUser.getUsername());
-                        shutdownCamera();
-                        return;
-                    } catch (RuntimeException ex) {
-                        statusLabel.setText("Already marked for today");
-                        statusLabel.setForeground(Color.ORANGE);
-                        JOptionPane.showMessageDialog(this, ex.getMessage());
-                        shutdownCamera();
-                        return;
-                    }
-                } else {
-                    JOptionPane.showMessageDialog(this, "No face detected in captured image! Attempt " + attemptCount + " of " + MAX_ATTEMPTS + ". Try again.");
-                    captureBtn.setEnabled(true);
-                    return;
-                }
+                JOptionPane.showMessageDialog(this, "No face detected in captured image! Attempt " + attemptCount + " of " + MAX_ATTEMPTS + ". Try again.");
             }
-            
-            // Verify face against registered photo
-            boolean match = faceService.verifyFace(Path.of(currentUser.getPhotoPath()), capFile);
-            if (match) {
-                // SUCCESS - Mark present and stop camera
-                try {
-                    attendanceService.markPresentWithCheck(currentUser.getId(), selectedSubject.getId(), "CAMERA", capFile.toString());
-                    statusLabel.setText("✓ Face verified! Marked PRESENT for " + currentUser.getUsername() + " in " + selectedSubject.getName());
-                    statusLabel.setForeground(Color.GREEN);
-                    JOptionPane.showMessageDialog(this, "Face verified successfully! Attendance marked PRESENT for " + currentUser.getUsername() + " in " + selectedSubject.getName());
-                    shutdownCamera();
-                    return;
-                } catch (RuntimeException ex) {
-                    statusLabel.setText("Already marked for today");
-                    statusLabel.setForeground(Color.ORANGE);
-                    JOptionPane.showMessageDialog(this, ex.getMessage());
-                    shutdownCamera();
-                    return;
-                }
-            } else {
-                // Face doesn't match
+            case NOT_VERIFIED -> {
                 statusLabel.setText("⚠ Face verification failed (Attempt " + attemptCount + "/" + MAX_ATTEMPTS + ")");
                 statusLabel.setForeground(Color.ORANGE);
-                
-                if (attemptCount >= MAX_ATTEMPTS) {
-                    // Mark as absent after 3 failed verification attempts
-                    try {
-                        attendanceService.markAbsentWithCheck(currentUser.getId(), selectedSubject.getId(), "CAMERA", capFile.toString());
-                        statusLabel.setText("Face verification failed " + MAX_ATTEMPTS + " times. Marked ABSENT for " + currentUser.getUsername());
-                        statusLabel.setForeground(Color.RED);
-                        JOptionPane.showMessageDialog(this, "Face verification failed after " + MAX_ATTEMPTS + " attempts. Marked ABSENT for " + currentUser.getUsername());
-                        shutdownCamera();
-                        return;
-                    } catch (RuntimeException ex) {
-                        statusLabel.setText("Already marked for today");
-                        statusLabel.setForeground(Color.ORANGE);
-                        JOptionPane.showMessageDialog(this, ex.getMessage());
-                        shutdownCamera();
-                        return;
-                    }
-                } else {
-                    JOptionPane.showMessageDialog(this, "Face verification failed! This is attempt " + attemptCount + " of " + MAX_ATTEMPTS + ". Please try again.");
-                    captureBtn.setEnabled(true);
-                    return;
-                }
+                JOptionPane.showMessageDialog(this, "Face verification failed! This is attempt " + attemptCount + " of " + MAX_ATTEMPTS + ". Please try again.");
             }
-        } catch (IOException ex) {
-            JOptionPane.showMessageDialog(this, "Error capturing image: " + ex.getMessage());
-            attemptCount--; // Don't count technical failures as attempts
-        } finally {
-            // Re-enable capture button if camera is still running and we haven't exceeded attempts
-            if (running && attemptCount < MAX_ATTEMPTS) {
-                SwingUtilities.invokeLater(() -> {
-                    if (faceDetected) {
-                        captureBtn.setEnabled(true);
-                    }
-                });
+            case PRESENT -> {
+                statusLabel.setText("✓ Face verified! Marked PRESENT for " + user.getUsername() + " in " + subject.getName());
+                statusLabel.setForeground(Color.GREEN);
+                JOptionPane.showMessageDialog(this, "Face verified successfully! Attendance marked PRESENT for " + user.getUsername() + " in " + subject.getName());
+                shutdownCamera();
+                return;
+            }
+            case ABSENT -> {
+                boolean noFace = result.getVerification() == null;
+                statusLabel.setText((noFace ? "Maximum attempts reached" : "Face verification failed " + MAX_ATTEMPTS + " times")
+                        + ". Marked ABSENT for " + user.getUsername());
+                statusLabel.setForeground(Color.RED);
+                JOptionPane.showMessageDialog(this, (noFace ? "No face detected" : "Face verification failed")
+                        + " after " + MAX_ATTEMPTS + " attempts. Marked ABSENT for " + user.getUsername());
+                shutdownCamera();
+                return;
+            }
+            default -> { }
+        }
+        // Re-enable capture button if camera is still running and we haven't exceeded attempts
+        if (running && attemptCount < MAX_ATTEMPTS && faceDetected) {
+            captureBtn.setEnabled(true);
+        }
+    }
+
+    private void onWalkUpFinished(Subject subject, CheckInPipeline.Result result) {
+        switch (result.getOutcome()) {
+            case PRESENT -> {
+                statusLabel.setText("✓ Identified " + result.getUser().getUsername() + " - Marked PRESENT in " + subject.getName());
+                statusLabel.setForeground(Color.GREEN);
+            }
+            case ALREADY_MARKED -> {
+                statusLabel.setText(result.getUser().getUsername() + ": already marked for today");
+                statusLabel.setForeground(Color.ORANGE);
+            }
+            default -> {
+                statusLabel.setText("⚠ Face not recognised - please try again or log in");
+                statusLabel.setForeground(Color.ORANGE);
             }
         }
     }
 
     private void shutdownCamera() {
+        if (checkInJob != null) {
+            checkInJob.cancel();
+            checkInJob = null;
+        }
+        boolean wasRunning = running;
         running = false;
         faceDetected = false;
-        try { if (videoCapture != null) { videoCapture.release(); videoCapture = null; } } catch (Exception ignore) {}
-        try { if (webcam != null && webcam.isOpen()) { webcam.close(); webcam = null; } } catch (Exception ignore) {}
+        if (wasRunning) {
+            // After close() returns no more frames are delivered, so the preview buffers can be freed
+            previewSubscription.close();
+            detectionSubscription.close();
+            detector.close();
+            if (speculative != null) {
+                speculative.close();
+                speculative = null;
+            }
+            cameraView.getFrames().release();
+            bestFrames.clear();
+            camera.release(); // the device stays warm for the next check-in
+        }
         SwingUtilities.invokeLater(() -> {
-            cameraLabel.setIcon(null);
-            cameraLabel.setText("Camera not started");
+            cameraView.clear("Camera not started");
             startBtn.setEnabled(true);
             stopBtn.setEnabled(false);
             captureBtn.setEnabled(false);
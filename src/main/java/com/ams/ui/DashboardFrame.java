@@ -24,6 +24,9 @@ public class DashboardFrame extends JFrame {
             tabs.addTab("Subjects", new SubjectsPanel());
         }
         tabs.addTab("Check-in", new CheckInPanel(user));
+        if (isAdmin) {
+            tabs.addTab("Kiosk", new KioskPanel());
+        }
         tabs.addTab("Attendance", new AttendancePanel(user, isAdmin));
         add(tabs, BorderLayout.CENTER);
 
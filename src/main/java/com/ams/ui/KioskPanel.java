@@ -0,0 +1,88 @@
+package com.ams.ui;
+
+import com.ams.dao.SubjectDao;
+import com.ams.model.Subject;
+import com.ams.service.AttendanceService;
+import com.ams.service.CheckInPipeline;
+import com.ams.service.FaceGallery;
+import com.ams.service.FaceService;
+
+import javax.swing.*;
+import java.awt.*;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Hands-free check-in for one or more classroom doors run from this PC: each station drives its own
+// camera and subject, and all of them share the face gallery and the check-in verification pool
+public class KioskPanel extends JPanel {
+    private final JPanel stationGrid = new JPanel(new GridLayout(0, 2, 4, 4));
+    private final List<KioskStationPanel> stations = new ArrayList<>();
+    private final JLabel poolLabel = new JLabel(" ");
+
+    private final SubjectDao subjectDao = new SubjectDao();
+    private final FaceService faceService = new FaceService();
+    private final FaceGallery faceGallery = FaceGallery.shared();
+    private final CheckInPipeline checkInPipeline = new CheckInPipeline(faceService, faceGallery, new AttendanceService());
+    private final Timer statsTimer = new Timer(1000, e -> refreshStats());
+
+    public KioskPanel() {
+        setLayout(new BorderLayout());
+
+        JPanel top = new JPanel();
+        JButton addBtn = new JButton("Add Camera");
+        addBtn.addActionListener(e -> addStation());
+        top.add(addBtn);
+        top.add(poolLabel);
+        add(top, BorderLayout.NORTH);
+        add(new JScrollPane(stationGrid), BorderLayout.CENTER);
+
+        addStation();
+        statsTimer.start();
+    }
+
+    private void addStation() {
+        List<Subject> subjects;
+        try {
+            subjects = subjectDao.listAll();
+        } catch (SQLException e) {
+            JOptionPane.showMessageDialog(this, "Failed to load subjects: " + e.getMessage());
+            return;
+        }
+        KioskStationPanel[] holder = new KioskStationPanel[1];
+        KioskStationPanel station = new KioskStationPanel(subjects, faceService, checkInPipeline, () -> removeStation(holder[0]));
+        holder[0] = station;
+        stations.add(station);
+        stationGrid.add(station);
+        stationGrid.revalidate();
+        if (!faceGallery.isLoaded()) loadGallery();
+    }
+
+    private void removeStation(KioskStationPanel station) {
+        stations.remove(station);
+        stationGrid.remove(station);
+        stationGrid.revalidate();
+        stationGrid.repaint();
+    }
+
+    // Shared verification pool first: a growing queue there means every camera is waiting on the CPU
+    private void refreshStats() {
+        long running = stations.stream().filter(KioskStationPanel::isRunning).count();
+        poolLabel.setText(String.format("%d of %d cameras running  ·  verification pool: %d threads, %d queued",
+                running, stations.size(), CheckInPipeline.getSharedPoolSize(), CheckInPipeline.getSharedQueueDepth()));
+        stations.forEach(KioskStationPanel::refreshStats);
+    }
+
+    private void loadGallery() {
+        Thread t = new Thread(() -> {
+            try {
+                faceGallery.reload();
+            } catch (SQLException ex) {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                        "Failed to load enrolled faces: " + ex.getMessage()));
+            }
+        }, "face-gallery-loader");
+        t.setDaemon(true);
+        t.start();
+    }
+}
@@ -0,0 +1,190 @@
+package com.ams.ui;
+
+import com.ams.model.Subject;
+import com.ams.service.CameraService;
+import com.ams.service.CheckInPipeline;
+import com.ams.service.FaceService;
+import com.ams.service.KioskService;
+import com.ams.util.CameraUtil;
+import com.ams.util.FrameConverter;
+
+import javax.swing.*;
+import java.awt.*;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+// One kiosk camera: once started, students are identified and marked PRESENT for the chosen subject
+// as they walk up, without anyone logging in or clicking
+public class KioskStationPanel extends JPanel {
+    private static final int LOG_SIZE = 50;
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private final JComboBox<Subject> subjectSelect = new JComboBox<>();
+    private final CameraSelect cameraSelect = new CameraSelect();
+    private final PreviewPanel cameraView = new PreviewPanel(new FrameConverter(640, 480));
+    private final JLabel countLabel = new JLabel(" ");
+    private final JLabel statusLabel = new JLabel(" ");
+    private final JLabel statsLabel = new JLabel(" ");
+    private final DefaultListModel<String> log = new DefaultListModel<>();
+    private final JButton startBtn = new JButton("Start Kiosk");
+    private final JButton stopBtn = new JButton("Stop Kiosk");
+    private final JButton removeBtn = new JButton("Remove");
+
+    // Shared by every station of the kiosk tab
+    private final FaceService faceService;
+    private final CheckInPipeline checkInPipeline;
+    private CameraService.Subscription previewSubscription;
+    // Owned by the EDT; null while stopped
+    private KioskService kiosk;
+
+    public KioskStationPanel(List<Subject> subjects, FaceService faceService, CheckInPipeline checkInPipeline,
+                             Runnable onRemove) {
+        this.faceService = faceService;
+        this.checkInPipeline = checkInPipeline;
+        setLayout(new BorderLayout());
+
+        JPanel top = new JPanel();
+        top.add(new JLabel("Subject:"));
+        for (Subject subject : subjects) {
+            subjectSelect.addItem(subject);
+        }
+        top.add(subjectSelect);
+        top.add(new JLabel("Camera:"));
+        top.add(cameraSelect);
+        startBtn.addActionListener(e -> startKiosk());
+        top.add(startBtn);
+        stopBtn.addActionListener(e -> stopKiosk());
+        stopBtn.setEnabled(false);
+        top.add(stopBtn);
+        removeBtn.addActionListener(e -> {
+            stopKiosk();
+            onRemove.run();
+        });
+        top.add(removeBtn);
+        add(top, BorderLayout.NORTH);
+
+        cameraView.setBorder(BorderFactory.createLineBorder(Color.GRAY));
+        add(cameraView, BorderLayout.CENTER);
+
+        JList<String> logList = new JList<>(log);
+        JScrollPane logScroll = new JScrollPane(logList);
+        logScroll.setPreferredSize(new Dimension(220, 0));
+        logScroll.setBorder(BorderFactory.createTitledBorder("Recent check-ins"));
+        add(logScroll, BorderLayout.EAST);
+
+        statusLabel.setHorizontalAlignment(SwingConstants.CENTER);
+        statusLabel.setFont(statusLabel.getFont().deriveFont(Font.BOLD, 14f));
+        countLabel.setFont(countLabel.getFont().deriveFont(Font.BOLD, 14f));
+        JPanel bottom = new JPanel(new BorderLayout());
+        bottom.add(statusLabel, BorderLayout.CENTER);
+        bottom.add(countLabel, BorderLayout.EAST);
+        bottom.add(statsLabel, BorderLayout.SOUTH);
+        add(bottom, BorderLayout.SOUTH);
+    }
+
+    private void startKiosk() {
+        if (kiosk != null) return;
+        Subject subject = (Subject) subjectSelect.getSelectedItem();
+        if (subject == null) {
+            JOptionPane.showMessageDialog(this, "Please select a subject");
+            return;
+        }
+        CameraService camera = cameraSelect.getSelectedCamera();
+        KioskService k = new KioskService(camera, checkInPipeline, faceService, subject.getId(), new KioskService.Listener() {
+            @Override
+            public void onFace(Rectangle face, int frameWidth, int frameHeight) {
+                cameraView.setFace(face, frameWidth, frameHeight);
+                cameraView.setOverlay(String.format("%s  ·  %.0f fps", face != null ? "Face detected" : "Waiting for a student",
+                        camera.getMeasuredFps()), face != null ? Color.GREEN : Color.ORANGE);
+            }
+
+            @Override
+            public void onCheckIn(CheckInPipeline.Result result) {
+                SwingUtilities.invokeLater(() -> onKioskCheckIn(subject, result));
+            }
+        });
+        try {
+            k.start();
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Failed to start camera: " + ex.getMessage());
+            return;
+        }
+        kiosk = k;
+        previewSubscription = camera.subscribe("kiosk-preview", CameraUtil.previewFps(), (frame, t) -> {
+            cameraView.getFrames().update(frame);
+            cameraView.frameReady();
+        });
+        subjectSelect.setEnabled(false);
+        cameraSelect.setEnabled(false);
+        startBtn.setEnabled(false);
+        stopBtn.setEnabled(true);
+        log.clear();
+        statusLabel.setText("Kiosk running for " + subject.getName() + " - look at the camera to check in");
+        statusLabel.setForeground(Color.BLUE);
+        updateCount();
+    }
+
+    public boolean isRunning() { return kiosk != null; }
+
+    // Called once a second by the kiosk tab so operators can see which camera the box cannot keep up with
+    void refreshStats() {
+        KioskService k = kiosk;
+        if (k == null) {
+            statsLabel.setText(" ");
+            return;
+        }
+        statsLabel.setText(String.format("Camera %d: %.1f fps processed  ·  queue %d  ·  %.0f%% frames dropped  ·  identify %.0f ms",
+                k.getCamera().getDeviceIndex(), k.getFramesPerSecond(), k.getQueueDepth(), k.getDropRate() * 100,
+                k.getIdentifyMillis()));
+    }
+
+    private void onKioskCheckIn(Subject subject, CheckInPipeline.Result result) {
+        if (kiosk == null) return;
+        String name = result.getUser() != null ? result.getUser().getUsername() : null;
+        switch (result.getOutcome()) {
+            case PRESENT -> {
+                statusLabel.setText("✓ " + name + " - Marked PRESENT in " + subject.getName());
+                statusLabel.setForeground(new Color(0, 128, 0));
+                addLog(name + " - present");
+            }
+            case ALREADY_MARKED -> {
+                statusLabel.setText(name + ": already marked for today");
+                statusLabel.setForeground(Color.ORANGE);
+                addLog(name + " - already marked");
+            }
+            default -> {
+                statusLabel.setText("⚠ Face not recognised - please step closer or see the teacher");
+                statusLabel.setForeground(Color.ORANGE);
+            }
+        }
+        updateCount();
+    }
+
+    private void addLog(String entry) {
+        log.add(0, LocalTime.now().format(TIME) + "  " + entry);
+        if (log.size() > LOG_SIZE) log.removeElementAt(LOG_SIZE);
+    }
+
+    private void updateCount() {
+        KioskService k = kiosk;
+        if (k != null) countLabel.setText("Checked in: " + k.getPresent() + "  ");
+    }
+
+    void stopKiosk() {
+        if (kiosk == null) return;
+        // After close() returns no more frames are delivered, so the preview buffers can be freed
+        previewSubscription.close();
+        kiosk.close();
+        kiosk = null;
+        cameraView.getFrames().release();
+        cameraView.clear("Kiosk stopped");
+        subjectSelect.setEnabled(true);
+        cameraSelect.setEnabled(true);
+        startBtn.setEnabled(true);
+        stopBtn.setEnabled(false);
+        statusLabel.setText("Kiosk stopped");
+        statusLabel.setForeground(Color.BLACK);
+        refreshStats();
+    }
+}
@@ -0,0 +1,105 @@
+package com.ams.ui;
+
+import com.ams.util.FrameConverter;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Live camera preview. Paints the converter's current frame scaled into the component (keeping the
+// aspect ratio) plus the tracked face rectangle and a status line, all in one paint pass. The
+// capture thread calls frameReady() per frame; while a repaint is still pending further calls are
+// no-ops, so a slow EDT never accumulates paint requests.
+public class PreviewPanel extends JComponent {
+    private final FrameConverter frames;
+    private final AtomicBoolean repaintPending = new AtomicBoolean();
+    private volatile boolean active;
+    private volatile String placeholder = "Camera not started";
+    // Face rectangle in source-frame coordinates and the size of that frame
+    private volatile Rectangle face;
+    private volatile Dimension faceFrameSize;
+    private volatile String overlayText;
+    private volatile Color overlayColor = Color.WHITE;
+
+    public PreviewPanel(FrameConverter frames) {
+        this.frames = frames;
+        setOpaque(true);
+        setBackground(Color.BLACK);
+        setPreferredSize(new Dimension(frames.getWidth(), frames.getHeight()));
+    }
+
+    public FrameConverter getFrames() { return frames; }
+
+    // Any thread: a new frame is in the converter
+    public void frameReady() {
+        active = true;
+        if (repaintPending.compareAndSet(false, true)) repaint();
+    }
+
+    // Any thread: face rectangle of the latest detection (null = none) in coordinates of a frameWidth x frameHeight frame
+    public void setFace(Rectangle face, int frameWidth, int frameHeight) {
+        this.faceFrameSize = new Dimension(frameWidth, frameHeight);
+        this.face = face != null ? new Rectangle(face) : null;
+        if (repaintPending.compareAndSet(false, true)) repaint();
+    }
+
+    public void setOverlay(String text, Color color) {
+        this.overlayText = text;
+        this.overlayColor = color != null ? color : Color.WHITE;
+        if (repaintPending.compareAndSet(false, true)) repaint();
+    }
+
+    // Stops showing frames and displays the placeholder text instead
+    public void clear(String placeholder) {
+        this.placeholder = placeholder;
+        active = false;
+        face = null;
+        overlayText = null;
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        repaintPending.set(false);
+        Graphics2D g2 = (Graphics2D) g;
+        g2.setColor(getBackground());
+        g2.fillRect(0, 0, getWidth(), getHeight());
+
+        if (!active || !frames.hasFrame()) {
+            g2.setColor(Color.LIGHT_GRAY);
+            FontMetrics fm = g2.getFontMetrics();
+            String text = placeholder != null ? placeholder : "";
+            g2.drawString(text, (getWidth() - fm.stringWidth(text)) / 2, (getHeight() + fm.getAscent()) / 2);
+            return;
+        }
+
+        // Letterbox the frame into the component
+        double scale = Math.min((double) getWidth() / frames.getWidth(), (double) getHeight() / frames.getHeight());
+        int w = (int) (frames.getWidth() * scale);
+        int h = (int) (frames.getHeight() * scale);
+        int x = (getWidth() - w) / 2;
+        int y = (getHeight() - h) / 2;
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        frames.paint(g2, x, y, w, h);
+
+        Rectangle f = face;
+        Dimension src = faceFrameSize;
+        if (f != null && src != null && src.width > 0 && src.height > 0) {
+            double sx = (double) w / src.width;
+            double sy = (double) h / src.height;
+            g2.setColor(Color.GREEN);
+            g2.setStroke(new BasicStroke(2f));
+            g2.drawRect(x + (int) (f.x * sx), y + (int) (f.y * sy), (int) (f.width * sx), (int) (f.height * sy));
+        }
+
+        String text = overlayText;
+        if (text != null && !text.isEmpty()) {
+            FontMetrics fm = g2.getFontMetrics();
+            int barHeight = fm.getHeight() + 8;
+            g2.setColor(new Color(0, 0, 0, 140));
+            g2.fillRect(x, y + h - barHeight, w, barHeight);
+            g2.setColor(overlayColor);
+            g2.drawString(text, x + 8, y + h - barHeight + 4 + fm.getAscent());
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.ams.ui;
 import com.ams.dao.UserDao;
 import com.ams.model.User;
 import com.ams.service.AuthService;
+import com.ams.service.FaceService;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
@@ -184,7 +185,8 @@ public class RegistrationDialog extends JDialog {
                 Files.createDirectories(dir);
                 Path dest = dir.resolve(created.getId() + getFileExtension(selectedPhotoFile.getName()));
                 Files.copy(selectedPhotoFile.toPath(), dest, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-                userDao.update(created.getId(), created.getUsername(), created.getRole(), dest.toString(), email, regNumber);
+                User withPhoto = userDao.update(created.getId(), created.getUsername(), created.getRole(), dest.toString(), email, regNumber);
+                FaceService.enrollAsync(withPhoto);
             }
             this.createdUsername = created.getUsername();
             this.success = true;
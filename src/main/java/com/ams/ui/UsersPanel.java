@@ -3,6 +3,7 @@ package com.ams.ui;
 import com.ams.dao.UserDao;
 import com.ams.model.User;
 import com.ams.service.AuthService;
+import com.ams.service.FaceService;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
@@ -191,7 +192,8 @@ public class UsersPanel extends JPanel {
                 Files.createDirectories(dir);
                 Path dest = dir.resolve(created.getId() + getFileExtension(selectedPhotoFile.getName()));
                 Files.copy(selectedPhotoFile.toPath(), dest, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-                userDao.update(created.getId(), created.getUsername(), created.getRole(), dest.toString(), email, regNumber);
+                User withPhoto = userDao.update(created.getId(), created.getUsername(), created.getRole(), dest.toString(), email, regNumber);
+                FaceService.enrollAsync(withPhoto);
             }
             selectedPhotoFile = null;
             photoPreview.setIcon(null);
@@ -224,7 +226,8 @@ public class UsersPanel extends JPanel {
             }
             String email = emailField.getText().trim();
             String regNumber = regNumberField.getText().trim();
-            userDao.update(id, username, role, photoPath, email, regNumber);
+            User updated = userDao.update(id, username, role, photoPath, email, regNumber);
+            if (selectedPhotoFile != null) FaceService.enrollAsync(updated);
             selectedPhotoFile = null;
             photoPreview.setIcon(null);
             loadUsers();
@@ -0,0 +1,29 @@
+package com.ams.util;
+
+import com.ams.config.Config;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+// The calendar attendance days are counted in. Every attendance_date written, backfilled or queried as
+// "today" comes from here, so neither the JVM's zone nor the database session's zone (the MySQL URL
+// forces UTC) can put two marks of one local day on different dates.
+public final class AttendanceClock {
+    // attendance.timeZone, e.g. Asia/Kolkata; blank uses the JVM's zone
+    private static final ZoneId ZONE = zoneFromConfig();
+
+    private AttendanceClock() {}
+
+    public static ZoneId zone() { return ZONE; }
+
+    public static LocalDate today() { return LocalDate.now(ZONE); }
+
+    // The attendance day a mark made at this instant counts for
+    public static LocalDate dayOf(Instant instant) { return LocalDate.ofInstant(instant, ZONE); }
+
+    private static ZoneId zoneFromConfig() {
+        String configured = Config.get("attendance.timeZone", "").trim();
+        return configured.isEmpty() ? ZoneId.systemDefault() : ZoneId.of(configured);
+    }
+}
@@ -1,13 +1,39 @@
 package com.ams.util;
 
+import com.ams.config.Config;
+import org.bytedeco.opencv.global.opencv_core;
 import org.bytedeco.opencv.global.opencv_imgproc;
 import org.bytedeco.opencv.opencv_core.Mat;
-import org.bytedeco.javacpp.BytePointer;
 
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class CameraUtil {
+    // Preview repaint and face detection run at independent rates; detection frames it cannot keep up with are dropped
+    private static final double PREVIEW_FPS = Double.parseDouble(Config.get("camera.preview.fps", "30"));
+    private static final double DETECT_FPS = Double.parseDouble(Config.get("face.detect.fps", "5"));
+    // Single background writer so check-in photos never block capture or verification
+    private static final ExecutorService PHOTO_WRITER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "photo-writer");
+        t.setDaemon(true);
+        return t;
+    });
+    // Distinguishes photos saved in the same millisecond, e.g. by two kiosks
+    private static final AtomicLong PHOTO_SEQUENCE = new AtomicLong();
+
+    public static double previewFps() { return PREVIEW_FPS; }
+
+    public static double detectFps() { return DETECT_FPS; }
+
     public static BufferedImage matToBufferedImage(Mat mat) {
         int type;
         if (mat.channels() == 1) {
@@ -19,8 +45,58 @@ public class CameraUtil {
         int height = mat.rows();
         BufferedImage image = new BufferedImage(width, height, type);
         byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
-        BytePointer bp = new BytePointer(mat.data());
-        bp.get(data);
+        // Read straight from the Mat's buffer; no intermediate native wrapper is allocated
+        mat.data().get(data);
         return image;
     }
+
+    // Copies a BufferedImage into a new BGR (or grayscale) Mat for in-memory face processing
+    public static Mat bufferedImageToMat(BufferedImage image) {
+        BufferedImage src = image;
+        if (src.getType() != BufferedImage.TYPE_3BYTE_BGR && src.getType() != BufferedImage.TYPE_BYTE_GRAY) {
+            // Webcam backends may hand out RGB/ARGB images; redraw once into the BGR layout OpenCV expects
+            src = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+            Graphics2D g = src.createGraphics();
+            g.drawImage(image, 0, 0, null);
+            g.dispose();
+        }
+        int matType = src.getType() == BufferedImage.TYPE_BYTE_GRAY ? opencv_core.CV_8UC1 : opencv_core.CV_8UC3;
+        byte[] data = ((DataBufferByte) src.getRaster().getDataBuffer()).getData();
+        Mat mat = new Mat(src.getHeight(), src.getWidth(), matType);
+        mat.data().put(data);
+        if (matType == opencv_core.CV_8UC1) {
+            // Face pipeline converts from BGR, so hand it a 3-channel frame
+            Mat bgr = new Mat();
+            opencv_imgproc.cvtColor(mat, bgr, opencv_imgproc.COLOR_GRAY2BGR);
+            return bgr;
+        }
+        return mat;
+    }
+
+    // Picks a file name under dir that no other save in this process uses and writes the JPEG in the
+    // background; the path is returned immediately
+    public static Path saveJpegAsync(BufferedImage image, Path dir, String prefix) {
+        Path out = newPhotoPath(dir, prefix);
+        writeJpegAsync(image, out);
+        return out;
+    }
+
+    // A file name under dir that no other save in this process uses; nothing is written yet
+    public static Path newPhotoPath(Path dir, String prefix) {
+        return dir.resolve(prefix + System.currentTimeMillis() + "-" + PHOTO_SEQUENCE.incrementAndGet() + ".jpg");
+    }
+
+    public static void writeJpegAsync(BufferedImage image, Path out) {
+        PHOTO_WRITER.execute(() -> {
+            try {
+                if (out.getParent() != null) Files.createDirectories(out.getParent());
+                // CREATE_NEW: never overwrite a photo another process saved under the same name
+                try (OutputStream os = Files.newOutputStream(out, StandardOpenOption.CREATE_NEW)) {
+                    ImageIO.write(image, "jpg", os);
+                }
+            } catch (Exception e) {
+                System.err.println("Failed to save photo " + out + ": " + e.getMessage());
+            }
+        });
+    }
 }
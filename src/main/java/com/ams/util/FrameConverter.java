@@ -0,0 +1,123 @@
+package com.ams.util;
+
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Size;
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+
+// Turns camera frames into paintable images without per-frame allocation. Frames are resized
+// natively into one reused Mat and copied straight into the raster of a preallocated back buffer,
+// which is then swapped with the front buffer the EDT paints from. Buffers are only reallocated
+// when the frame type changes. One producer thread; any thread may paint.
+public class FrameConverter {
+    private final int width;
+    private final int height;
+    // Guards the swap and painting of the front buffer; the producer fills the back buffer without it
+    private final Object swapLock = new Object();
+    private BufferedImage front;
+    private BufferedImage back;
+    // Native scratch buffers, retained so an enclosing PointerScope can never free them
+    private Mat scaled;
+    private Size size;
+    private long frames;
+
+    public FrameConverter(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+
+    // Producer side: converts a BGR or grayscale frame into the back buffer and publishes it
+    public void update(Mat frame) {
+        if (frame == null || frame.empty()) return;
+        int type = frame.channels() == 1 ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_3BYTE_BGR;
+        ensureBuffers(type);
+        Mat src = frame;
+        if (frame.cols() != width || frame.rows() != height) {
+            if (scaled == null) scaled = new Mat().retainReference();
+            if (size == null) size = new Size(width, height).retainReference();
+            // resize() reuses the destination's memory when size and type are unchanged
+            opencv_imgproc.resize(frame, scaled, size, 0, 0, opencv_imgproc.INTER_LINEAR);
+            src = scaled;
+        } else if (!frame.isContinuous()) {
+            if (scaled == null) scaled = new Mat().retainReference();
+            frame.copyTo(scaled);
+            src = scaled;
+        }
+        src.data().get(((DataBufferByte) back.getRaster().getDataBuffer()).getData());
+        swap();
+    }
+
+    // Producer side for sources that already deliver BufferedImages (webcam-capture)
+    public void update(BufferedImage image) {
+        if (image == null) return;
+        ensureBuffers(BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = back.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(image, 0, 0, width, height, null);
+        g.dispose();
+        swap();
+    }
+
+    public boolean hasFrame() {
+        synchronized (swapLock) {
+            return frames > 0;
+        }
+    }
+
+    public long getFrameCount() {
+        synchronized (swapLock) {
+            return frames;
+        }
+    }
+
+    // Paints the latest frame scaled to w x h; holding the lock keeps the producer from swapping mid-paint
+    public void paint(Graphics g, int x, int y, int w, int h) {
+        synchronized (swapLock) {
+            if (frames == 0) return;
+            if (w == width && h == height) g.drawImage(front, x, y, null);
+            else g.drawImage(front, x, y, w, h, null);
+        }
+    }
+
+    // Frees the native scratch buffers; the converter can still be used afterwards
+    public void release() {
+        if (scaled != null) {
+            scaled.close();
+            scaled = null;
+        }
+        if (size != null) {
+            size.close();
+            size = null;
+        }
+    }
+
+    private void ensureBuffers(int type) {
+        if (back != null && back.getType() == type) return;
+        synchronized (swapLock) {
+            back = new BufferedImage(width, height, type);
+            front = new BufferedImage(width, height, type);
+            frames = 0;
+        }
+        if (scaled != null) {
+            scaled.close();
+            scaled = null;
+        }
+    }
+
+    private void swap() {
+        synchronized (swapLock) {
+            BufferedImage t = front;
+            front = back;
+            back = t;
+            frames++;
+        }
+    }
+}
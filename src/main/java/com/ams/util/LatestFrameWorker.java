@@ -0,0 +1,71 @@
+package com.ams.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+// Single background thread fed through a one-slot mailbox: submit() replaces any frame still
+// waiting, so the worker always processes the newest frame and never builds a backlog when the
+// handler is slower than the producer. Replaced frames are counted as dropped.
+public class LatestFrameWorker<T> implements AutoCloseable {
+    private final String name;
+    private final Consumer<T> handler;
+    private final AtomicReference<T> mailbox = new AtomicReference<>();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    public LatestFrameWorker(String name, Consumer<T> handler) {
+        this.name = name;
+        this.handler = handler;
+        this.thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void submit(T frame) {
+        if (!running || frame == null) return;
+        submitted.incrementAndGet();
+        if (mailbox.getAndSet(frame) != null) {
+            dropped.incrementAndGet();
+            Metrics.increment(name + ".dropped");
+        }
+        LockSupport.unpark(thread);
+    }
+
+    public long getSubmitted() { return submitted.get(); }
+    public long getProcessed() { return processed.get(); }
+    public long getDropped() { return dropped.get(); }
+
+    // Frames waiting to be processed: 0 or 1, since a newer frame replaces a waiting one
+    public int getPending() { return mailbox.get() != null ? 1 : 0; }
+
+    private void run() {
+        while (running) {
+            T frame = mailbox.getAndSet(null);
+            if (frame == null) {
+                LockSupport.park(this);
+                continue;
+            }
+            try {
+                handler.accept(frame);
+            } catch (RuntimeException e) {
+                System.err.println(name + " failed: " + e.getMessage());
+            }
+            processed.incrementAndGet();
+        }
+    }
+
+    // Stops after the frame in progress; a frame still waiting in the mailbox is discarded
+    @Override
+    public void close() {
+        running = false;
+        mailbox.set(null);
+        LockSupport.unpark(thread);
+        System.out.println(name + ": " + processed.get() + " frames processed, " + dropped.get()
+                + " dropped of " + submitted.get() + " submitted");
+    }
+}
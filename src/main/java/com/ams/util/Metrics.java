@@ -0,0 +1,67 @@
+package com.ams.util;
+
+import com.ams.config.Config;
+import org.bytedeco.javacpp.Pointer;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Minimal in-process metrics: named counters and gauges, readable as a snapshot and
+// optionally logged periodically (metrics.logIntervalSeconds, 0 disables logging)
+public class Metrics {
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, Supplier<? extends Number>> GAUGES = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService logger;
+
+    static {
+        // JavaCPP native footprint: physical = process RSS, total = bytes held by live Pointers
+        gauge("native.physicalBytes", Pointer::physicalBytes);
+        gauge("native.totalBytes", Pointer::totalBytes);
+        gauge("native.maxPhysicalBytes", Pointer::maxPhysicalBytes);
+        startLogging(Long.parseLong(Config.get("metrics.logIntervalSeconds", "0")));
+    }
+
+    private Metrics() {}
+
+    public static LongAdder counter(String name) {
+        return COUNTERS.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    public static void increment(String name) { counter(name).increment(); }
+
+    public static void add(String name, long delta) { counter(name).add(delta); }
+
+    public static void gauge(String name, Supplier<? extends Number> value) { GAUGES.put(name, value); }
+
+    public static void removeGauge(String name) { GAUGES.remove(name); }
+
+    public static Map<String, Number> snapshot() {
+        Map<String, Number> out = new TreeMap<>();
+        COUNTERS.forEach((k, v) -> out.put(k, v.sum()));
+        GAUGES.forEach((k, v) -> {
+            try {
+                out.put(k, v.get());
+            } catch (RuntimeException e) {
+                // A gauge whose owner is gone must not break the snapshot
+            }
+        });
+        return out;
+    }
+
+    private static synchronized void startLogging(long intervalSeconds) {
+        if (intervalSeconds <= 0 || logger != null) return;
+        logger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-logger");
+            t.setDaemon(true);
+            return t;
+        });
+        logger.scheduleAtFixedRate(() -> System.out.println("Metrics: " + snapshot()),
+                intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,103 @@
+package com.ams.dao;
+
+import com.ams.db.DatabaseInitializer;
+import com.ams.db.Db;
+import com.ams.service.AttendanceService;
+import com.ams.util.AttendanceClock;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Runs against the in-memory H2 database configured in src/test/resources/config.properties
+class AttendanceDaoTest {
+    private final AttendanceDao dao = new AttendanceDao();
+
+    @BeforeAll
+    static void migrate() throws SQLException {
+        try (Connection c = Db.getConnection()) {
+            DatabaseInitializer.migrate(c);
+        }
+    }
+
+    @BeforeEach
+    void clear() throws SQLException {
+        try (Connection c = Db.getConnection(); Statement st = c.createStatement()) {
+            st.executeUpdate("DELETE FROM attendance_records");
+        }
+    }
+
+    @Test
+    void secondMarkForTheSameDayRaisesAlreadyMarked() throws SQLException {
+        assertNotNull(dao.insert(1, 10, "PRESENT", "CAMERA"));
+        assertThrows(AttendanceDao.AlreadyMarkedException.class, () -> dao.insert(1, 10, "ABSENT", "CAMERA"));
+
+        assertTrue(dao.hasAttendanceForToday(1, 10));
+        assertEquals("PRESENT", dao.findByUserSubjectDate(1, 10, AttendanceClock.today()).getStatus(),
+                "the existing mark is not overwritten");
+    }
+
+    @Test
+    void otherSubjectsAndUsersAreIndependent() throws SQLException {
+        dao.insert(1, 10, "PRESENT", "CAMERA");
+        dao.insert(1, 11, "PRESENT", "CAMERA");
+        dao.insert(2, 10, "PRESENT", "QR");
+        assertEquals(3, dao.listByDate(AttendanceClock.today()).size());
+    }
+
+    @Test
+    void serviceMapsTheDuplicateToItsOwnException() {
+        AttendanceService service = new AttendanceService();
+        service.markPresentWithCheck(3, 10, "CAMERA", null);
+        assertThrows(AttendanceService.AlreadyMarkedException.class,
+                () -> service.markAbsentWithCheck(3, 10, "CAMERA", null));
+    }
+
+    @Test
+    void concurrentCheckInsRecordExactlyOneMark() throws Exception {
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Object>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                Callable<Object> insert = () -> {
+                    start.await();
+                    return dao.insert(4, 10, "PRESENT", "CAMERA");
+                };
+                results.add(pool.submit(insert));
+            }
+            start.countDown();
+            int recorded = 0;
+            for (Future<Object> f : results) {
+                try {
+                    f.get();
+                    recorded++;
+                } catch (ExecutionException e) {
+                    assertInstanceOf(AttendanceDao.AlreadyMarkedException.class, e.getCause());
+                }
+            }
+            assertEquals(1, recorded);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(1, dao.listByDate(AttendanceClock.today()).size());
+    }
+}
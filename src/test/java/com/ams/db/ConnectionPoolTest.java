@@ -0,0 +1,205 @@
+package com.ams.db;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConnectionPoolTest {
+    private final String url = "jdbc:h2:mem:pool-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+    private ConnectionPool pool;
+
+    @AfterEach
+    void closePool() throws SQLException {
+        if (pool != null) pool.close();
+        try (Connection c = DriverManager.getConnection(url, "sa", ""); Statement st = c.createStatement()) {
+            st.execute("SHUTDOWN");
+        }
+    }
+
+    private ConnectionPool newPool(int maxSize, int statementCacheSize) {
+        pool = new ConnectionPool("test-" + UUID.randomUUID(), url, "sa", "",
+                new ConnectionPool.Settings(0, maxSize, 100, 300, 1, statementCacheSize));
+        return pool;
+    }
+
+    @Test
+    void exhaustedPoolTimesOutAndRecoversWhenAConnectionIsReturned() throws SQLException {
+        newPool(1, 0);
+        Connection held = pool.getConnection();
+        long start = System.nanoTime();
+        assertThrows(SQLTimeoutException.class, pool::getConnection);
+        assertTrue(System.nanoTime() - start >= 90_000_000L, "waited for the borrow timeout");
+        assertEquals(1, pool.getStats().timeouts());
+
+        held.close();
+        try (Connection again = pool.getConnection()) {
+            assertFalse(again.isClosed());
+        }
+        assertEquals(1, pool.getStats().created(), "the returned connection is reused");
+    }
+
+    @Test
+    void closingTwiceReturnsTheConnectionOnce() throws SQLException {
+        newPool(1, 0);
+        Connection c = pool.getConnection();
+        c.close();
+        c.close();
+        assertTrue(c.isClosed());
+        try (Connection a = pool.getConnection()) {
+            assertThrows(SQLTimeoutException.class, pool::getConnection);
+        }
+    }
+
+    @Test
+    void deadIdleConnectionFailsValidationAndIsReplaced() throws Exception {
+        newPool(2, 0);
+        try (Connection c = pool.getConnection(); Statement st = c.createStatement()) {
+            st.execute("CREATE TABLE t(id INT)");
+        }
+        // Kill the database under the idle connection, then wait past the recently-used validation bypass
+        try (Connection direct = DriverManager.getConnection(url, "sa", ""); Statement st = direct.createStatement()) {
+            st.execute("SHUTDOWN");
+        }
+        Thread.sleep(600);
+
+        try (Connection c = pool.getConnection(); Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT 1")) {
+            assertTrue(rs.next());
+        }
+        assertEquals(2, pool.getStats().created());
+        assertEquals(1, pool.getStats().evicted());
+    }
+
+    @Test
+    void statementCacheReusesAndEvictsLeastRecentlyUsed() throws SQLException {
+        newPool(1, 2);
+        try (Connection c = pool.getConnection()) {
+            prepareAndClose(c, "SELECT 1");
+            prepareAndClose(c, "SELECT 2");
+            prepareAndClose(c, "SELECT 1");
+            assertEquals(1, pool.getStats().statementHits());
+            // Cache holds SELECT 2 and SELECT 1; adding SELECT 3 evicts SELECT 2
+            prepareAndClose(c, "SELECT 3");
+            long misses = pool.getStats().statementMisses();
+            prepareAndClose(c, "SELECT 2");
+            assertEquals(misses + 1, pool.getStats().statementMisses());
+            long hits = pool.getStats().statementHits();
+            prepareAndClose(c, "SELECT 2");
+            assertEquals(hits + 1, pool.getStats().statementHits());
+        }
+    }
+
+    @Test
+    void statementsFailAfterTheirConnectionIsReturned() throws SQLException {
+        newPool(1, 4);
+        Connection c = pool.getConnection();
+        PreparedStatement cached = c.prepareStatement("SELECT 1");
+        Statement plain = c.createStatement();
+        c.close();
+
+        assertTrue(cached.isClosed());
+        assertTrue(plain.isClosed());
+        assertThrows(SQLException.class, cached::executeQuery);
+        assertThrows(SQLException.class, () -> plain.executeQuery("SELECT 1"));
+
+        // The statement went back to the cache and serves the next borrower
+        try (Connection next = pool.getConnection(); PreparedStatement ps = next.prepareStatement("SELECT 1");
+             ResultSet rs = ps.executeQuery()) {
+            assertTrue(rs.next());
+            assertEquals(next, ps.getConnection());
+        }
+        assertEquals(1, pool.getStats().statementHits());
+    }
+
+    @Test
+    void returnedConnectionIsRolledBackAndSessionSettingsRestored() throws SQLException {
+        newPool(1, 0);
+        int isolation;
+        try (Connection c = pool.getConnection(); Statement st = c.createStatement()) {
+            st.execute("CREATE TABLE marks(id INT)");
+            isolation = c.getTransactionIsolation();
+        }
+        try (Connection c = pool.getConnection(); Statement st = c.createStatement()) {
+            c.setAutoCommit(false);
+            c.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+            st.execute("INSERT INTO marks VALUES (1)");
+            c.setReadOnly(true);
+        }
+        try (Connection c = pool.getConnection(); Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM marks")) {
+            assertTrue(c.getAutoCommit());
+            assertFalse(c.isReadOnly());
+            assertEquals(isolation, c.getTransactionIsolation());
+            assertTrue(rs.next());
+            assertEquals(0, rs.getInt(1), "uncommitted insert was rolled back");
+        }
+        assertEquals(1, pool.getStats().created());
+    }
+
+    @Test
+    void connectionWhoseStatementFailsWithLinkErrorIsNotReused() throws SQLException {
+        newPool(1, 4);
+        try (Connection c = pool.getConnection(); Statement st = c.createStatement()) {
+            st.execute("CREATE ALIAS FAIL_LINK FOR \"" + LinkFault.class.getName() + ".fail\"");
+        }
+        try (Connection c = pool.getConnection(); PreparedStatement ps = c.prepareStatement("SELECT FAIL_LINK()")) {
+            SQLException e = assertThrows(SQLException.class, ps::executeQuery);
+            assertEquals("08S01", e.getSQLState(), e.getMessage());
+        }
+        try (Connection c = pool.getConnection(); Statement st = c.createStatement()) {
+            assertThrows(SQLException.class, () -> st.executeQuery("SELECT FAIL_LINK()"));
+        }
+        try (Connection c = pool.getConnection(); Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT 1")) {
+            assertTrue(rs.next());
+        }
+        assertEquals(3, pool.getStats().created(), "each failed connection was discarded");
+        assertEquals(2, pool.getStats().evicted());
+    }
+
+    @Test
+    void statementsAndResultSetsNeverExposeThePhysicalConnection() throws SQLException {
+        newPool(1, 4);
+        try (Connection c = pool.getConnection(); Statement plain = c.createStatement();
+             PreparedStatement cached = c.prepareStatement("SELECT 1")) {
+            assertSame(c, plain.getConnection());
+            try (ResultSet rs = plain.executeQuery("SELECT 1")) {
+                assertSame(plain, rs.getStatement());
+            }
+            ResultSet rs = cached.executeQuery();
+            assertSame(cached, rs.getStatement());
+            assertSame(c, rs.getStatement().getConnection());
+            cached.close();
+            assertTrue(rs.isClosed());
+            assertThrows(SQLException.class, rs::next);
+        }
+    }
+
+    // Called by H2 through CREATE ALIAS, which needs a public class: fails the way a dropped network link does
+    public static final class LinkFault {
+        public static int fail() throws SQLException {
+            throw new SQLNonTransientConnectionException("link down", "08S01");
+        }
+    }
+
+    private static void prepareAndClose(Connection c, String sql) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+            assertTrue(rs.next());
+        }
+    }
+}
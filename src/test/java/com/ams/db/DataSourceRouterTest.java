@@ -0,0 +1,172 @@
+package com.ams.db;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DataSourceRouterTest {
+    private static final int THRESHOLD = 3;
+
+    // URLs as the driver reports them; the pools connect with DB_CLOSE_DELAY appended
+    private final String primaryUrl = "jdbc:h2:mem:primary-" + UUID.randomUUID();
+    private final String fallbackUrl = "jdbc:h2:mem:fallback-" + UUID.randomUUID();
+    private FlakyPool primary;
+    private ConnectionPool fallback;
+    private DataSourceRouter router;
+    private final List<DataSourceRouter.State> switches = new CopyOnWriteArrayList<>();
+
+    // A primary whose database can be taken down and brought back
+    private static final class FlakyPool extends ConnectionPool {
+        volatile boolean down;
+
+        FlakyPool(String url, int maxSize) {
+            super("primary-" + UUID.randomUUID(), url + ";DB_CLOSE_DELAY=-1", "sa", "", new Settings(0, maxSize, 50, 300, 1, 0));
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (down) throw new SQLNonTransientConnectionException("Connection refused", "08001");
+            return super.getConnection();
+        }
+    }
+
+    @BeforeEach
+    void open() {
+        primary = new FlakyPool(primaryUrl, 1);
+        fallback = new ConnectionPool("fallback-" + UUID.randomUUID(), fallbackUrl + ";DB_CLOSE_DELAY=-1", "sa", "",
+                new ConnectionPool.Settings(0, 2, 50, 300, 1, 0));
+        router = new DataSourceRouter(primary, fallback, THRESHOLD, 1, 0);
+        router.addListener(switches::add);
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        router.close();
+        primary.close();
+        fallback.close();
+        for (String url : List.of(primaryUrl, fallbackUrl)) {
+            try (Connection c = DriverManager.getConnection(url, "sa", ""); Statement st = c.createStatement()) {
+                st.execute("SHUTDOWN");
+            }
+        }
+    }
+
+    @Test
+    void switchesToFallbackOnlyAfterThresholdConsecutiveFailures() throws SQLException {
+        primary.down = true;
+        for (int i = 1; i < THRESHOLD; i++) {
+            // A failed caller is still served, by the fallback, but the circuit stays closed
+            assertEquals(fallbackUrl, urlOf(router));
+            assertEquals(DataSourceRouter.Target.PRIMARY, router.getTarget());
+            assertEquals(i, router.getState().consecutiveFailures());
+        }
+        assertEquals(fallbackUrl, urlOf(router));
+        assertEquals(DataSourceRouter.Target.FALLBACK, router.getTarget());
+        assertEquals(1, switches.size());
+        assertEquals(DataSourceRouter.Target.FALLBACK, switches.get(0).target());
+        assertTrue(switches.get(0).lastError().contains("Connection refused"));
+    }
+
+    @Test
+    void successResetsTheFailureCount() throws SQLException {
+        primary.down = true;
+        for (int i = 1; i < THRESHOLD; i++) urlOf(router);
+        primary.down = false;
+        assertEquals(primaryUrl, urlOf(router));
+        assertEquals(0, router.getState().consecutiveFailures());
+
+        primary.down = true;
+        for (int i = 1; i < THRESHOLD; i++) urlOf(router);
+        assertEquals(DataSourceRouter.Target.PRIMARY, router.getTarget());
+        assertTrue(switches.isEmpty());
+    }
+
+    @Test
+    void exhaustedPrimaryPoolIsNotCountedAsAFailure() throws SQLException {
+        try (Connection held = router.getConnection()) {
+            for (int i = 0; i < THRESHOLD + 1; i++) {
+                assertThrows(SQLTimeoutException.class, router::getConnection);
+            }
+            assertEquals(DataSourceRouter.Target.PRIMARY, router.getTarget());
+            assertEquals(0, router.getState().consecutiveFailures());
+
+            // The probe treats a busy primary as reachable as well
+            router.probe();
+            assertEquals(0, router.getState().consecutiveFailures());
+        }
+        assertTrue(switches.isEmpty());
+    }
+
+    @Test
+    void onlyTheProbeSwitchesBackToPrimary() throws SQLException {
+        primary.down = true;
+        for (int i = 0; i < THRESHOLD; i++) urlOf(router);
+        assertEquals(DataSourceRouter.Target.FALLBACK, router.getTarget());
+
+        // A probe against a primary that is still down keeps the circuit open and fires nothing
+        router.probe();
+        assertEquals(DataSourceRouter.Target.FALLBACK, router.getTarget());
+        assertEquals(THRESHOLD + 1, router.getState().consecutiveFailures());
+        assertEquals(1, switches.size());
+
+        primary.down = false;
+        long borrows = primary.getStats().borrows();
+        for (int i = 0; i < 5; i++) assertEquals(fallbackUrl, urlOf(router));
+        assertEquals(DataSourceRouter.Target.FALLBACK, router.getTarget());
+        assertEquals(borrows, primary.getStats().borrows(), "callers never touch the primary while the circuit is open");
+
+        router.probe();
+        assertEquals(DataSourceRouter.Target.PRIMARY, router.getTarget());
+        assertEquals(0, router.getState().consecutiveFailures());
+        assertEquals(primaryUrl, urlOf(router));
+        assertEquals(List.of(DataSourceRouter.Target.FALLBACK, DataSourceRouter.Target.PRIMARY),
+                switches.stream().map(DataSourceRouter.State::target).toList());
+    }
+
+    @Test
+    void failingListenerDoesNotStopOthersOrTheSwitch() throws SQLException {
+        List<DataSourceRouter.State> later = new CopyOnWriteArrayList<>();
+        router.addListener(state -> { throw new IllegalStateException("migration failed"); });
+        router.addListener(later::add);
+
+        primary.down = true;
+        for (int i = 0; i < THRESHOLD; i++) urlOf(router);
+        assertEquals(DataSourceRouter.Target.FALLBACK, router.getTarget());
+        assertEquals(1, later.size());
+    }
+
+    @Test
+    void withoutFallbackFailuresReachTheCaller() {
+        DataSourceRouter alone = new DataSourceRouter(primary, null, THRESHOLD, 1, 0);
+        try {
+            primary.down = true;
+            for (int i = 0; i < THRESHOLD + 1; i++) {
+                SQLException e = assertThrows(SQLException.class, alone::getConnection);
+                assertEquals("08001", e.getSQLState());
+            }
+            assertEquals(DataSourceRouter.Target.PRIMARY, alone.getTarget());
+        } finally {
+            alone.close();
+        }
+    }
+
+    private static String urlOf(DataSourceRouter router) throws SQLException {
+        try (Connection c = router.getConnection()) {
+            return c.getMetaData().getURL();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.ams.db;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DatabaseInitializerTest {
+    private Connection c;
+
+    @BeforeEach
+    void open() throws SQLException {
+        c = DriverManager.getConnection("jdbc:h2:mem:init-" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_UPPER=false", "sa", "");
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        c.close();
+    }
+
+    @Test
+    void uniqueKeyMigrationKeepsPresentThenLatestAndArchivesTheRest() throws SQLException {
+        // Schema as it was before migration 6, with duplicate marks already in it
+        new SchemaMigrator(DatabaseInitializer.MIGRATIONS.subList(0, 5)).migrate(c);
+        exec("INSERT INTO attendance_records(id, user_id, subject_id, status, source, marked_at, attendance_date) VALUES " +
+                // PRESENT wins over a later ABSENT
+                "(1, 1, 1, 'PRESENT', 'CAMERA', '2026-01-05 09:00:00', '2026-01-05')," +
+                "(2, 1, 1, 'ABSENT', 'CAMERA', '2026-01-05 10:00:00', '2026-01-05')," +
+                // Without a PRESENT mark the latest wins
+                "(3, 2, 1, 'ABSENT', 'CAMERA', '2026-01-05 09:00:00', '2026-01-05')," +
+                "(4, 2, 1, 'LATE', 'MANUAL', '2026-01-05 11:00:00', '2026-01-05')," +
+                // Other days are separate groups
+                "(5, 1, 1, 'ABSENT', 'CAMERA', '2026-01-06 09:00:00', '2026-01-06')," +
+                // Legacy rows without a subject are outside the key and kept
+                "(6, 3, NULL, 'PRESENT', 'QR', '2026-01-05 09:00:00', '2026-01-05')," +
+                "(7, 3, NULL, 'PRESENT', 'QR', '2026-01-05 09:30:00', '2026-01-05')");
+
+        assertEquals(1, DatabaseInitializer.migrate(c));
+
+        assertEquals(List.of(1L, 4L, 5L, 6L, 7L), ids("SELECT id FROM attendance_records ORDER BY id"));
+        assertEquals(List.of(2L, 3L), ids("SELECT id FROM attendance_duplicates ORDER BY id"));
+        assertThrows(SQLException.class, () -> exec("INSERT INTO attendance_records(user_id, subject_id, status, source, attendance_date) " +
+                "VALUES (1, 1, 'PRESENT', 'QR', '2026-01-05')"));
+        assertThrows(SQLException.class, () -> exec("INSERT INTO attendance_records(user_id, subject_id, status, source) " +
+                "VALUES (9, 1, 'PRESENT', 'QR')"), "attendance_date is required");
+    }
+
+    @Test
+    void uniqueKeyMigrationWithoutDuplicatesArchivesNothing() throws SQLException {
+        new SchemaMigrator(DatabaseInitializer.MIGRATIONS.subList(0, 5)).migrate(c);
+        exec("INSERT INTO attendance_records(user_id, subject_id, status, source, marked_at) VALUES (1, 1, 'PRESENT', 'QR', '2026-01-05 09:00:00')");
+
+        assertEquals(1, DatabaseInitializer.migrate(c));
+        assertEquals(1, ids("SELECT id FROM attendance_records WHERE attendance_date IS NOT NULL").size(),
+                "rows without attendance_date are backfilled before the column becomes NOT NULL");
+        assertEquals(0, ids("SELECT id FROM attendance_duplicates").size());
+    }
+
+    private void exec(String sql) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.executeUpdate(sql);
+        }
+    }
+
+    private List<Long> ids(String sql) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) ids.add(rs.getLong(1));
+        }
+        return ids;
+    }
+}
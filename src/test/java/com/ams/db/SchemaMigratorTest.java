@@ -0,0 +1,111 @@
+package com.ams.db;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SchemaMigratorTest {
+    private Connection c;
+    private final List<Integer> runs = new ArrayList<>();
+
+    @BeforeEach
+    void open() throws SQLException {
+        c = DriverManager.getConnection("jdbc:h2:mem:migrate-" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_UPPER=false", "sa", "");
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        c.close();
+    }
+
+    @Test
+    void appliesPendingMigrationsOnceInVersionOrder() throws SQLException {
+        // Listed out of order on purpose
+        SchemaMigrator migrator = new SchemaMigrator(List.of(
+                recording(2, "CREATE TABLE b(id INT)"),
+                recording(1, "CREATE TABLE a(id INT)"),
+                recording(3, "INSERT INTO a VALUES (1)")));
+
+        assertEquals(3, migrator.latestVersion());
+        assertEquals(3, migrator.migrate(c));
+        assertEquals(List.of(1, 2, 3), runs);
+        assertEquals(List.of(1, 2, 3), recordedVersions());
+
+        assertEquals(0, migrator.migrate(c));
+        assertEquals(List.of(1, 2, 3), runs, "nothing runs on an up-to-date database");
+        assertEquals(1, count("SELECT COUNT(*) FROM a"));
+    }
+
+    @Test
+    void laterRunAppliesOnlyNewMigrations() throws SQLException {
+        Migration first = recording(1, "CREATE TABLE a(id INT)");
+        new SchemaMigrator(List.of(first)).migrate(c);
+
+        assertEquals(1, new SchemaMigrator(List.of(first, recording(2, "ALTER TABLE a ADD COLUMN name VARCHAR(10)"))).migrate(c));
+        assertEquals(List.of(1, 2), runs);
+        assertEquals(2, SchemaMigrator.currentVersion(c));
+        assertTrue(Migration.hasColumn(c, "a", "name"));
+    }
+
+    @Test
+    void failedMigrationIsRolledBackAndRetriedOnTheNextRun() throws SQLException {
+        Migration setup = Migration.of(1, "table", "CREATE TABLE a(id INT PRIMARY KEY)");
+        Migration broken = Migration.of(2, "rows", "INSERT INTO a VALUES (1)", "INSERT INTO a VALUES (1)");
+        SchemaMigrator migrator = new SchemaMigrator(List.of(setup, broken));
+
+        SQLException e = assertThrows(SQLException.class, () -> migrator.migrate(c));
+        assertTrue(e.getMessage().contains("Schema migration 2"), e.getMessage());
+        assertEquals(1, SchemaMigrator.currentVersion(c), "the failed version is not recorded");
+        assertEquals(0, count("SELECT COUNT(*) FROM a"), "its partial changes are rolled back");
+        assertTrue(c.getAutoCommit(), "the caller's auto-commit mode is restored");
+
+        Migration fixed = Migration.of(2, "rows", "INSERT INTO a VALUES (1)");
+        assertEquals(1, new SchemaMigrator(List.of(setup, fixed)).migrate(c));
+        assertEquals(1, count("SELECT COUNT(*) FROM a"));
+    }
+
+    @Test
+    void applicationSchemaMigratesFromEmptyAndThenIsUpToDate() throws SQLException {
+        int applied = DatabaseInitializer.migrate(c);
+        assertTrue(applied > 0);
+        assertEquals(applied, recordedVersions().size());
+        assertEquals(0, DatabaseInitializer.migrate(c));
+    }
+
+    private Migration recording(int version, String sql) {
+        return new Migration(version, "test " + version, conn -> {
+            runs.add(version);
+            try (Statement st = conn.createStatement()) {
+                st.executeUpdate(sql);
+            }
+        });
+    }
+
+    private List<Integer> recordedVersions() throws SQLException {
+        List<Integer> versions = new ArrayList<>();
+        try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery("SELECT version FROM schema_version ORDER BY version")) {
+            while (rs.next()) versions.add(rs.getInt(1));
+        }
+        return versions;
+    }
+
+    private int count(String sql) throws SQLException {
+        try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
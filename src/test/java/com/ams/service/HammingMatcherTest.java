@@ -0,0 +1,117 @@
+package com.ams.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HammingMatcherTest {
+
+    @Test
+    void packPlacesBytesLittleEndianAndPadsPartialWords() {
+        byte[] row = new byte[10];
+        row[0] = 0x01;
+        row[7] = (byte) 0x80;
+        row[8] = (byte) 0xFF;
+        long[] packed = HammingMatcher.pack(row, 1, 10);
+        assertEquals(2, packed.length);
+        assertEquals(0x8000000000000001L, packed[0]);
+        assertEquals(0xFFL, packed[1]);
+    }
+
+    @Test
+    void orbSizedDescriptorsMatchNaiveCrossCheck() {
+        Random rnd = new Random(7);
+        for (int round = 0; round < 50; round++) {
+            assertMatchesNaive(randomDescriptors(rnd, 1 + rnd.nextInt(40), 32, 256),
+                    randomDescriptors(rnd, 1 + rnd.nextInt(40), 32, 256), 32);
+        }
+    }
+
+    @Test
+    void otherRowWidthsUseGenericPathAndMatchNaiveCrossCheck() {
+        Random rnd = new Random(11);
+        for (int bytes : new int[]{1, 8, 20, 61}) {
+            for (int round = 0; round < 20; round++) {
+                assertMatchesNaive(randomDescriptors(rnd, 1 + rnd.nextInt(30), bytes, 256),
+                        randomDescriptors(rnd, 1 + rnd.nextInt(30), bytes, 256), bytes);
+            }
+        }
+    }
+
+    @Test
+    void tiesResolveToLowestIndexInBothDirections() {
+        // Only two distinct byte values: almost every distance is tied
+        Random rnd = new Random(3);
+        for (int bytes : new int[]{32, 16}) {
+            for (int round = 0; round < 30; round++) {
+                assertMatchesNaive(randomDescriptors(rnd, 2 + rnd.nextInt(12), bytes, 2),
+                        randomDescriptors(rnd, 2 + rnd.nextInt(12), bytes, 2), bytes);
+            }
+        }
+    }
+
+    @Test
+    void identicalDuplicatesCrossCheckOnlyTheFirstPair() {
+        byte[] same = new byte[32 * 3];
+        HammingMatcher.Matches m = HammingMatcher.matchCrossChecked(
+                HammingMatcher.pack(same, 3, 32), HammingMatcher.pack(same, 3, 32), 4);
+        assertEquals(1, m.size());
+        assertEquals(0, m.queryIdx(0));
+        assertEquals(0, m.trainIdx(0));
+        assertEquals(0, m.distance(0));
+    }
+
+    @Test
+    void emptySidesProduceNoMatches() {
+        long[] some = HammingMatcher.pack(new byte[64], 2, 32);
+        assertEquals(0, HammingMatcher.matchCrossChecked(new long[0], some, 4).size());
+        assertEquals(0, HammingMatcher.matchCrossChecked(some, new long[0], 4).size());
+    }
+
+    private static void assertMatchesNaive(byte[] query, byte[] train, int bytesPerRow) {
+        int n = query.length / bytesPerRow;
+        int m = train.length / bytesPerRow;
+        int words = HammingMatcher.wordsPerRow(bytesPerRow);
+        HammingMatcher.Matches actual = HammingMatcher.matchCrossChecked(
+                HammingMatcher.pack(query, n, bytesPerRow), HammingMatcher.pack(train, m, bytesPerRow), words);
+
+        List<int[]> expected = naiveCrossCheck(query, n, train, m, bytesPerRow);
+        assertEquals(expected.size(), actual.size());
+        for (int k = 0; k < expected.size(); k++) {
+            assertArrayEquals(expected.get(k),
+                    new int[]{actual.queryIdx(k), actual.trainIdx(k), actual.distance(k)}, "pair " + k);
+        }
+    }
+
+    // Full distance matrix on the raw bytes; first minimum wins in each direction
+    private static List<int[]> naiveCrossCheck(byte[] query, int n, byte[] train, int m, int bytesPerRow) {
+        int[][] d = new int[n][m];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < m; j++) {
+                for (int b = 0; b < bytesPerRow; b++) {
+                    d[i][j] += Integer.bitCount((query[i * bytesPerRow + b] ^ train[j * bytesPerRow + b]) & 0xFF);
+                }
+            }
+        }
+        List<int[]> pairs = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            int bestJ = 0;
+            for (int j = 1; j < m; j++) if (d[i][j] < d[i][bestJ]) bestJ = j;
+            int bestI = 0;
+            for (int k = 1; k < n; k++) if (d[k][bestJ] < d[bestI][bestJ]) bestI = k;
+            if (bestI == i) pairs.add(new int[]{i, bestJ, d[i][bestJ]});
+        }
+        return pairs;
+    }
+
+    private static byte[] randomDescriptors(Random rnd, int rows, int bytesPerRow, int distinctValues) {
+        byte[] data = new byte[rows * bytesPerRow];
+        for (int i = 0; i < data.length; i++) data[i] = (byte) (distinctValues == 256 ? rnd.nextInt(256) : rnd.nextInt(distinctValues));
+        return data;
+    }
+}